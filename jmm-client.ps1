@@ -0,0 +1,37 @@
+# Sends a compile request to the compile server on port JMM_SERVER_PORT, used by 'jmm.bat'.
+# Exits with 255 when there is no server that this user started, so that the compiler is started instead
+
+$port = $env:JMM_SERVER_PORT
+$tokenFile = Join-Path $HOME ".jmm\server-$port.token"
+if (-not (Test-Path $tokenFile)) {
+    exit 255
+}
+
+try {
+    $client = New-Object System.Net.Sockets.TcpClient('127.0.0.1', [int]$port)
+} catch {
+    exit 255
+}
+
+$utf8 = New-Object System.Text.UTF8Encoding($false)
+$stream = $client.GetStream()
+$writer = New-Object System.IO.StreamWriter($stream, $utf8)
+$writer.NewLine = "`n"
+$reader = New-Object System.IO.StreamReader($stream, $utf8)
+
+$writer.WriteLine((Get-Content -Raw $tokenFile).Trim())
+$writer.WriteLine((Get-Location).Path)
+$writer.WriteLine($args -join "`t")
+$writer.Flush()
+
+$status = 1
+while ($null -ne ($line = $reader.ReadLine())) {
+    if ($line.StartsWith('@@jmm-exit ')) {
+        $status = [int]$line.Substring('@@jmm-exit '.Length)
+        break
+    }
+    Write-Output $line
+}
+
+$client.Close()
+exit $status
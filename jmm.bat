@@ -1,3 +1,12 @@
 @echo off
 
+rem If a compile server is running (started with 'jmm -s=<port>') and JMM_SERVER_PORT points to it,
+rem send the request to the server instead of starting a new JVM, as the 'jmm' script does. The client
+rem exits with 255 when there is no server to send it to
+if not defined JMM_SERVER_PORT goto launch
+powershell -NoProfile -ExecutionPolicy Bypass -File "%~dp0jmm-client.ps1" %*
+if errorlevel 255 goto launch
+exit /b %errorlevel%
+
+:launch
 call "./build/install/jmm/bin/jmm.bat" %*
@@ -0,0 +1,104 @@
+package pt.up.fe.comp2024.benchmark;
+
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Programs used as input of the benchmarks.
+ * <p>
+ * A corpus is either one of the folders of test resources, or a synthetic program whose size grows with a scale
+ * factor, written as 'synthetic-SCALE'.
+ */
+public class Corpus {
+
+    /**
+     * Folder with the test resources, relative to the root of the project. Can be changed with the system property
+     * 'jmm.corpus.root'.
+     */
+    private static final String DEFAULT_ROOT = "test/pt/up/fe/comp";
+
+    private static final String SYNTHETIC_PREFIX = "synthetic-";
+
+    public static List<String> load(String corpus) {
+        if (corpus.startsWith(SYNTHETIC_PREFIX)) {
+            int scale = Integer.parseInt(corpus.substring(SYNTHETIC_PREFIX.length()));
+            return List.of(generateProgram(scale));
+        }
+
+        var root = new File(System.getProperty("jmm.corpus.root", DEFAULT_ROOT), corpus);
+        if (!root.isDirectory()) {
+            throw new RuntimeException("Could not find corpus folder '" + root.getAbsolutePath() + "'");
+        }
+
+        List<File> files = new ArrayList<>(SpecsIo.getFilesRecursive(root, "jmm"));
+        files.sort(Comparator.comparing(File::getPath));
+
+        List<String> programs = new ArrayList<>(files.size());
+        for (var file : files) {
+            programs.add(SpecsIo.read(file));
+        }
+
+        return programs;
+    }
+
+    /**
+     * Generates a program with the given number of methods. Each method has loops, conditions, array accesses and
+     * calls, so that every stage of the compiler has work proportional to the scale.
+     */
+    public static String generateProgram(int scale) {
+        var code = new StringBuilder();
+
+        code.append("import io;\n");
+        code.append("class Synthetic {\n");
+        code.append("    int total;\n");
+        code.append("    int[] values;\n\n");
+
+        for (int i = 0; i < scale; i++) {
+            // Each method calls the previous one, so calls always terminate
+            var call = i > 0 ? "this.method" + (i - 1) + "(s / 2, arr)" : "s / 2";
+
+            code.append("""
+                        int method%d(int a, int[] arr) {
+                            int i;
+                            int s;
+                            boolean b;
+                            i = 0;
+                            s = a;
+                            while (i < arr.length) {
+                                if (s < 100 && !(i < 2)) {
+                                    s = s + arr[i] * 2;
+                                } else {
+                                    s = s - 1;
+                                }
+                                i = i + 1;
+                            }
+                            b = s < a;
+                            if (b) {
+                                s = %s;
+                            } else {
+                                total = total + s;
+                            }
+                            return s;
+                        }
+
+                    """.formatted(i, call));
+        }
+
+        code.append("""
+                    public static void main(String[] args) {
+                        Synthetic synthetic;
+                        int[] arr;
+                        synthetic = new Synthetic();
+                        arr = new int[10];
+                        io.println(synthetic.method%d(1, arr));
+                    }
+                }
+                """.formatted(scale - 1));
+
+        return code.toString();
+    }
+}
@@ -0,0 +1,151 @@
+package pt.up.fe.comp2024.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.parser.JmmParserResult;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.analysis.passes.OtherSemantics;
+import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
+import pt.up.fe.comp2024.backend.ClassFileGenerator;
+import pt.up.fe.comp2024.backend.JasminGenerator;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.optimization.OllirIrGeneratorVisitor;
+import pt.up.fe.comp2024.optimization.OllirPrinter;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.utils.ReportUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks each stage of the compiler separately, over a whole corpus of programs.
+ * <p>
+ * The input of each stage is prepared once per trial by running the previous stages. Programs that do not compile
+ * are left out of the corpus, so that every stage sees the same programs.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StageBenchmarks {
+
+    @Param({"cp2", "cpf", "synthetic-10", "synthetic-100"})
+    public String corpus;
+
+    private Map<String, String> config;
+
+    private List<String> programs;
+    private List<JmmParserResult> parserResults;
+    private List<JmmSemanticsResult> semanticsResults;
+    private List<OllirResult> ollirResults;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        config = CompilerConfig.getDefault();
+
+        programs = new ArrayList<>();
+        parserResults = new ArrayList<>();
+        semanticsResults = new ArrayList<>();
+        ollirResults = new ArrayList<>();
+
+        for (var program : Corpus.load(corpus)) {
+            try {
+                var parserResult = new JmmParserImpl().parse(program, config);
+                if (ReportUtils.anyError(parserResult.getReports())) {
+                    continue;
+                }
+
+                var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+                if (ReportUtils.anyError(semanticsResult.getReports())) {
+                    continue;
+                }
+
+                var ollirResult = new JmmOptimizationImpl().toOllir(semanticsResult);
+                new JasminGenerator(ollirResult).build();
+                new ClassFileGenerator(ollirResult).build();
+
+                programs.add(program);
+                parserResults.add(parserResult);
+                semanticsResults.add(semanticsResult);
+                ollirResults.add(ollirResult);
+            } catch (RuntimeException e) {
+                // Programs that some stage cannot handle are not part of the corpus
+            }
+        }
+
+        if (programs.isEmpty()) {
+            throw new RuntimeException("No program of corpus '" + corpus + "' compiles");
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole blackhole) {
+        var parser = new JmmParserImpl();
+        for (var program : programs) {
+            blackhole.consume(parser.parse(program, config));
+        }
+    }
+
+    @Benchmark
+    public void symbolTable(Blackhole blackhole) {
+        for (var parserResult : parserResults) {
+            blackhole.consume(JmmSymbolTableBuilder.build(parserResult.getRootNode()));
+        }
+    }
+
+    @Benchmark
+    public void undeclaredVariable(Blackhole blackhole) {
+        for (var semanticsResult : semanticsResults) {
+            var pass = new UndeclaredVariable();
+            blackhole.consume(pass.analyze(semanticsResult.getRootNode(), semanticsResult.getSymbolTable()));
+        }
+    }
+
+    @Benchmark
+    public void otherSemantics(Blackhole blackhole) {
+        for (var semanticsResult : semanticsResults) {
+            var pass = new OtherSemantics();
+            blackhole.consume(pass.analyze(semanticsResult.getRootNode(), semanticsResult.getSymbolTable()));
+        }
+    }
+
+    @Benchmark
+    public void ollirGeneration(Blackhole blackhole) {
+        // The cost of the former round trip through OLLIR code, to compare with ollirIrGeneration
+        for (var semanticsResult : semanticsResults) {
+            var builder = new OllirIrGeneratorVisitor(semanticsResult.getSymbolTable());
+            var ollirCode = OllirPrinter.print(builder.build(semanticsResult.getRootNode()));
+            blackhole.consume(new OllirResult(ollirCode, semanticsResult.getConfig()));
+        }
+    }
+
+    @Benchmark
+    public void ollirIrGeneration(Blackhole blackhole) {
+        for (var semanticsResult : semanticsResults) {
+            var builder = new OllirIrGeneratorVisitor(semanticsResult.getSymbolTable());
+            blackhole.consume(builder.build(semanticsResult.getRootNode()));
+        }
+    }
+
+    @Benchmark
+    public void jasminGeneration(Blackhole blackhole) {
+        for (var ollirResult : ollirResults) {
+            blackhole.consume(new JasminGenerator(ollirResult).build());
+        }
+    }
+
+    @Benchmark
+    public void classFileGeneration(Blackhole blackhole) {
+        for (var ollirResult : ollirResults) {
+            blackhole.consume(new ClassFileGenerator(ollirResult).build());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package pt.up.fe.comp2024;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Optional;
+
+/**
+ * Destination of one of the artifacts printed by the compiler (AST, OLLIR or Jasmin code).
+ * <p>
+ * An artifact is either printed to the output of the compiler, written to a file through a buffered writer, or
+ * suppressed. Artifacts are written incrementally, so they never have to be held in memory as a single string.
+ */
+public class ArtifactOutput {
+
+    /**
+     * Writes the contents of an artifact.
+     */
+    @FunctionalInterface
+    public interface ArtifactWriter {
+        void write(Appendable out) throws IOException;
+    }
+
+    private final File file;
+    private final PrintStream stream;
+
+    private ArtifactOutput(File file, PrintStream stream) {
+        this.file = file;
+        this.stream = stream;
+    }
+
+    /**
+     * Output for the value of an artifact option: a path, 'none' to suppress the artifact, or no value to print it
+     * to the given stream.
+     */
+    public static ArtifactOutput of(Optional<String> option, PrintStream defaultStream) {
+        if (option.isEmpty()) {
+            return new ArtifactOutput(null, defaultStream);
+        }
+
+        if (option.get().equals(CompilerConfig.NO_OUTPUT)) {
+            return new ArtifactOutput(null, null);
+        }
+
+        return new ArtifactOutput(new File(option.get()), null);
+    }
+
+    public boolean isSuppressed() {
+        return file == null && stream == null;
+    }
+
+    public Optional<File> getFile() {
+        return Optional.ofNullable(file);
+    }
+
+    public void write(CharSequence contents) {
+        write(out -> out.append(contents));
+    }
+
+    public void write(ArtifactWriter writer) {
+        if (isSuppressed()) {
+            return;
+        }
+
+        try {
+            if (stream != null) {
+                writer.write(stream);
+                // Same layout as printing the artifact with println
+                stream.println();
+                return;
+            }
+
+            var parent = file.getAbsoluteFile().getParentFile();
+            if (parent != null) {
+                Files.createDirectories(parent.toPath());
+            }
+
+            try (var fileWriter = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                writer.write(fileWriter);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write to '" + file + "'", e);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+import pt.up.fe.comp2024.utils.ReportUtils;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Compiles several files at once, running the pipeline of each file as an independent task of a fork-join pool.
+ */
+public class BatchCompiler {
+
+    private final Map<String, String> config;
+    private final int parallelism;
+    private final CompilationCache cache;
+    private final File classOutputDir;
+    private final boolean profiling;
+
+    public BatchCompiler(Map<String, String> config, int parallelism) {
+        this.config = config;
+        this.parallelism = parallelism;
+        this.cache = CompilerConfig.getCacheDir(config).map(CompilationCache::new).orElse(null);
+        this.classOutputDir = CompilerConfig.getClassOutputDir(config).orElse(null);
+        this.profiling = CompilerConfig.getProfileFile(config).isPresent();
+    }
+
+    /**
+     * Result of compiling a single file of the batch.
+     */
+    public record FileResult(File file, List<Report> reports, JasminResult jasminResult,
+                             List<StageProfiler.Measurement> measurements) {
+
+        public FileResult(File file, List<Report> reports, JasminResult jasminResult) {
+            this(file, reports, jasminResult, List.of());
+        }
+
+        public boolean isSuccess() {
+            return jasminResult != null && !ReportUtils.anyError(reports);
+        }
+    }
+
+    /**
+     * Compiles all the given files, returning one result per file, in the same order as the input.
+     */
+    public List<FileResult> compile(List<File> files) {
+        List<Callable<FileResult>> tasks = new ArrayList<>(files.size());
+        for (var file : files) {
+            tasks.add(() -> compileFile(file));
+        }
+
+        // The parser library caches reflective lookups in a map that is not thread-safe, fill it before going parallel
+        new JmmParserImpl().parse("class WarmUp {}", config);
+
+        var pool = new ForkJoinPool(parallelism);
+        try {
+            List<FileResult> results = new ArrayList<>(files.size());
+            for (Future<FileResult> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Batch compilation was interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unexpected exception during batch compilation", e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private FileResult compileFile(File file) {
+        if (!profiling) {
+            return compileFile(file, StageProfiler.disabled());
+        }
+
+        // Each file is compiled by a single thread, so it gets its own profiler
+        var profiler = new StageProfiler(file.getPath());
+        var result = compileFile(file, profiler);
+
+        return new FileResult(result.file(), result.reports(), result.jasminResult(), profiler.getMeasurements());
+    }
+
+    private FileResult compileFile(File file, StageProfiler profiler) {
+        // Each file gets its own config, so that stages see the correct input file
+        Map<String, String> fileConfig = new HashMap<>(config);
+        fileConfig.put("inputFile", file.getAbsolutePath());
+
+        List<Report> reports = new ArrayList<>();
+
+        try {
+            String code = SpecsIo.read(file);
+
+            // Unchanged files are served from the cache, skipping all stages
+            String cacheKey = CompilationCache.getKey(code, fileConfig);
+            var cachedEntry = cache != null ?
+                    profiler.measure("cache", () -> cache.get(cacheKey)) :
+                    Optional.<CompilationCache.Entry>empty();
+            if (cachedEntry.isPresent()) {
+                if (classOutputDir != null) {
+                    var jasminResult = Launcher.toClassFile(cachedEntry.get(), fileConfig);
+                    jasminResult.compile(classOutputDir);
+                    return new FileResult(file, jasminResult.getReports(), jasminResult);
+                }
+
+                var className = cachedEntry.get().getSymbolTable().getClassName();
+                var jasminResult = new JasminResult(className, cachedEntry.get().jasminCode(), reports, fileConfig);
+                return new FileResult(file, reports, jasminResult);
+            }
+
+            // Parsing stage
+            var parserResult = profiler.measure("parse", () -> new JmmParserImpl().parse(code, fileConfig));
+            reports.addAll(parserResult.getReports());
+            if (ReportUtils.anyError(reports)) {
+                return new FileResult(file, reports, null);
+            }
+
+            // The cache keeps the AST as parsed, before the optimizations change it
+            var ast = cache != null ? CompilationCache.Entry.serializeAst(parserResult.getRootNode()) : null;
+
+            // Semantic Analysis stage, reports from previous stages are carried by the results
+            var semanticsResult = new JmmAnalysisImpl(profiler).semanticAnalysis(parserResult);
+            if (ReportUtils.anyError(semanticsResult.getReports())) {
+                return new FileResult(file, semanticsResult.getReports(), null);
+            }
+
+            // Optimization stage
+            var optimization = new JmmOptimizationImpl();
+            var optimizedSemantics = profiler.measure("optimizeAst", () -> optimization.optimize(semanticsResult));
+            var unoptimizedOllir = profiler.measure("ollir", () -> optimization.toOllir(optimizedSemantics));
+            var ollirResult = profiler.measure("optimizeOllir", () -> optimization.optimize(unoptimizedOllir));
+            if (ReportUtils.anyError(ollirResult.getReports())) {
+                return new FileResult(file, ollirResult.getReports(), null);
+            }
+
+            // Code generation stage
+            var jasminResult = profiler.measure("backend", () -> Launcher.newBackend(fileConfig).toJasmin(ollirResult));
+            if (ReportUtils.anyError(jasminResult.getReports())) {
+                return new FileResult(file, jasminResult.getReports(), jasminResult);
+            }
+
+            if (classOutputDir != null) {
+                jasminResult.compile(classOutputDir);
+            }
+
+            if (cache != null) {
+                var jasminCode = classOutputDir != null ? "" : jasminResult.getJasminCode();
+                cache.put(cacheKey, CompilationCache.Entry.of(ast, optimizedSemantics.getSymbolTable(),
+                        ollirResult.getOllirCode(), jasminCode));
+            }
+
+            return new FileResult(file, jasminResult.getReports(), jasminResult);
+
+        } catch (Exception e) {
+            reports.add(Report.newError(Stage.OTHER, -1, -1, "Exception while compiling '" + file + "'", e));
+            return new FileResult(file, reports, null);
+        }
+    }
+
+    /**
+     * Prints the result of each file, followed by the aggregated number of reports of the whole batch.
+     */
+    public static void printSummary(List<FileResult> results, PrintStream out) {
+        Map<ReportType, Integer> reportCount = new HashMap<>();
+        int failed = 0;
+
+        for (var result : results) {
+            if (!result.isSuccess()) {
+                failed++;
+            }
+
+            out.println((result.isSuccess() ? "[OK] " : "[FAILED] ") + result.file());
+
+            for (var report : result.reports()) {
+                reportCount.merge(report.getType(), 1, Integer::sum);
+
+                if (report.getType() == ReportType.ERROR || report.getType() == ReportType.WARNING) {
+                    out.println("    " + report);
+                }
+            }
+        }
+
+        out.println();
+        out.println("Compiled " + results.size() + " files: " + (results.size() - failed) + " succeeded, "
+                + failed + " failed");
+        for (var type : ReportType.values()) {
+            out.println("    " + type + " reports: " + reportCount.getOrDefault(type, 0));
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package pt.up.fe.comp2024;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp.jmm.ast.JmmSerializer;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * On-disk cache with the results of every stage of the pipeline, indexed by a hash of the source code and of the
+ * options that change the generated code.
+ * <p>
+ * Each entry is a folder with the serialized AST, the symbol table, the OLLIR code and the Jasmin code. When the cache
+ * grows beyond its size bound, the least recently used entries are removed. Keys also depend on the build of the
+ * compiler, so a rebuilt compiler never reads the entries of the previous one.
+ */
+public class CompilationCache {
+
+    /**
+     * Identifies the build of the compiler, so that entries of another build, which may generate other code, are not
+     * reused.
+     */
+    private static final String CACHE_VERSION = computeBuildVersion();
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    private static final String AST_FILE = "ast.json";
+    private static final String SYMBOL_TABLE_FILE = "symbols.json";
+    private static final String OLLIR_FILE = "code.ollir";
+    private static final String JASMIN_FILE = "code.j";
+
+    private static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(JmmNode.class, new JmmSerializer())
+            .create();
+
+    private final File cacheDir;
+    private final long maxBytes;
+
+    public CompilationCache(File cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+        SpecsIo.mkdir(cacheDir);
+    }
+
+    public CompilationCache(File cacheDir) {
+        this(cacheDir, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * A cached compilation, with the results of each stage.
+     */
+    public record Entry(String ast, String symbolTable, String ollirCode, String jasminCode) {
+
+        /**
+         * @param ast the AST as parsed, from {@link #serializeAst(JmmNode)}, since optimizations change it in place
+         */
+        public static Entry of(String ast, SymbolTable table, String ollirCode, String jasminCode) {
+            return new Entry(ast, GSON.toJson(table), ollirCode, jasminCode);
+        }
+
+        public static String serializeAst(JmmNode rootNode) {
+            return GSON.toJson(rootNode, JmmNode.class);
+        }
+
+        public JmmNode getRootNode() {
+            return JmmNodeImpl.fromJson(ast);
+        }
+
+        public SymbolTable getSymbolTable() {
+            return GSON.fromJson(symbolTable, JmmSymbolTable.class);
+        }
+    }
+
+    /**
+     * Returns the version of the build of the compiler that is part of every key.
+     */
+    public static String getBuildVersion() {
+        return CACHE_VERSION;
+    }
+
+    /**
+     * Hashes the class files of the compiler, either its jar or the folder with its classes. When they cannot be read,
+     * a random version is returned, so entries are only reused by the same run.
+     */
+    private static String computeBuildVersion() {
+        try {
+            var codeSource = CompilationCache.class.getProtectionDomain().getCodeSource();
+            if (codeSource == null) {
+                return UUID.randomUUID().toString();
+            }
+
+            var digest = MessageDigest.getInstance("SHA-256");
+            var location = Path.of(codeSource.getLocation().toURI());
+
+            if (!Files.isDirectory(location)) {
+                digest.update(Files.readAllBytes(location));
+                return HexFormat.of().formatHex(digest.digest());
+            }
+
+            List<Path> classFiles;
+            try (var files = Files.walk(location)) {
+                classFiles = files.filter(file -> file.toString().endsWith(".class")).sorted().toList();
+            }
+
+            for (var classFile : classFiles) {
+                digest.update((location.relativize(classFile) + "\0").getBytes(StandardCharsets.UTF_8));
+                digest.update(Files.readAllBytes(classFile));
+            }
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (IOException | URISyntaxException | NoSuchAlgorithmException | SecurityException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    /**
+     * Computes the key of a compilation, from the source code and the options that affect the generated code.
+     */
+    public static String getKey(String code, Map<String, String> config) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+
+            digest.update(CACHE_VERSION.getBytes(StandardCharsets.UTF_8));
+            digest.update(("\0" + CompilerConfig.getOptimize(config)).getBytes(StandardCharsets.UTF_8));
+            digest.update(("\0" + CompilerConfig.getRegisterAllocation(config)).getBytes(StandardCharsets.UTF_8));
+            digest.update(("\0" + CompilerConfig.getLoopRotation(config)).getBytes(StandardCharsets.UTF_8));
+            // Entries of the class file backend have no Jasmin code
+            digest.update(("\0" + CompilerConfig.getClassOutputDir(config).isPresent()).getBytes(StandardCharsets.UTF_8));
+            digest.update(("\0" + code).getBytes(StandardCharsets.UTF_8));
+
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Could not compute cache key", e);
+        }
+    }
+
+    /**
+     * Returns the entry with the given key, if present, marking it as the most recently used.
+     */
+    public Optional<Entry> get(String key) {
+        var entryDir = new File(cacheDir, key);
+        if (!entryDir.isDirectory()) {
+            return Optional.empty();
+        }
+
+        try {
+            var entry = new Entry(
+                    Files.readString(new File(entryDir, AST_FILE).toPath()),
+                    Files.readString(new File(entryDir, SYMBOL_TABLE_FILE).toPath()),
+                    Files.readString(new File(entryDir, OLLIR_FILE).toPath()),
+                    Files.readString(new File(entryDir, JASMIN_FILE).toPath()));
+
+            entryDir.setLastModified(System.currentTimeMillis());
+
+            return Optional.of(entry);
+        } catch (IOException e) {
+            // Incomplete or corrupted entry, treat as a miss
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Stores the entry with the given key, evicting old entries if the cache becomes too large.
+     */
+    public void put(String key, Entry entry) {
+        var entryDir = new File(cacheDir, key);
+        if (entryDir.isDirectory()) {
+            return;
+        }
+
+        try {
+            // Write to a temporary folder first, so that readers never see partial entries
+            var tempDir = Files.createTempDirectory(cacheDir.toPath(), key + ".tmp").toFile();
+
+            Files.writeString(new File(tempDir, AST_FILE).toPath(), entry.ast());
+            Files.writeString(new File(tempDir, SYMBOL_TABLE_FILE).toPath(), entry.symbolTable());
+            Files.writeString(new File(tempDir, OLLIR_FILE).toPath(), entry.ollirCode());
+            Files.writeString(new File(tempDir, JASMIN_FILE).toPath(), entry.jasminCode());
+
+            try {
+                Files.move(tempDir.toPath(), entryDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Another compilation stored the same entry in the meantime
+                SpecsIo.deleteFolder(tempDir);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write cache entry '" + key + "'", e);
+        }
+
+        evict();
+    }
+
+    /**
+     * Removes the least recently used entries until the cache is within its size bound.
+     */
+    private synchronized void evict() {
+        var entryDirs = cacheDir.listFiles(file -> file.isDirectory() && !file.getName().contains(".tmp"));
+        if (entryDirs == null) {
+            return;
+        }
+
+        List<File> entries = new ArrayList<>(Arrays.asList(entryDirs));
+        long totalBytes = entries.stream().mapToLong(CompilationCache::getSize).sum();
+
+        entries.sort(Comparator.comparingLong(File::lastModified));
+
+        for (var entryDir : entries) {
+            if (totalBytes <= maxBytes) {
+                break;
+            }
+
+            totalBytes -= getSize(entryDir);
+            SpecsIo.deleteFolder(entryDir);
+        }
+    }
+
+    private static long getSize(File entryDir) {
+        var files = entryDir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+
+        return Arrays.stream(files).mapToLong(File::length).sum();
+    }
+}
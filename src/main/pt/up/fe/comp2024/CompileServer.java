@@ -0,0 +1,281 @@
+package pt.up.fe.comp2024;
+
+import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
+import pt.up.fe.comp2024.parser.JmmParserImpl;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Long-running compiler that accepts compile requests through a local TCP socket, so that JVM startup and the
+ * initialization of the parser and backend libraries are only paid once.
+ * <p>
+ * Each request is made of three lines: the token of the server, the working directory of the client, and the
+ * command-line arguments separated by tabs. The server answers with the output of the compiler, followed by a line
+ * with {@link #EXIT_MARKER} and the exit code of the compilation. Failed requests are answered with the stage that
+ * failed and the stack trace of the error.
+ * <p>
+ * The token is generated when the server starts and written to {@link #getTokenFile(int)}, which only the user that
+ * started the server can read, so other local users cannot make the server read or write files. The request
+ * '-s=stop' stops the server.
+ */
+public class CompileServer {
+
+    public static final String EXIT_MARKER = "@@jmm-exit ";
+
+    public static final String STOP_REQUEST = "-s=" + CompilerConfig.SERVER_STOP;
+
+    /**
+     * Stage of the compiler that each package implements, to tell where a request failed.
+     */
+    private static final Map<String, String> STAGES = Map.of(
+            "pt.up.fe.comp2024.parser", "parsing",
+            "pt.up.fe.comp2024.symboltable", "semantic analysis",
+            "pt.up.fe.comp2024.analysis", "semantic analysis",
+            "pt.up.fe.comp2024.optimization", "optimization",
+            "pt.up.fe.comp2024.backend", "code generation");
+
+    private static final String WARM_UP_CODE = """
+            class WarmUp {
+                int sum(int[] a) {
+                    int i;
+                    int s;
+                    i = 0;
+                    s = 0;
+                    while (i < a.length) {
+                        if (a[i] < 10 && !(s < 0)) {
+                            s = s + a[i] * 2;
+                        } else {
+                            s = s - 1;
+                        }
+                        i = i + 1;
+                    }
+                    return s;
+                }
+                public static void main(String[] args) {
+                }
+            }
+            """;
+
+    private final int port;
+    private final File tokenFile;
+    private final String token;
+
+    private volatile ServerSocket serverSocket;
+    private volatile boolean stopped;
+
+    public CompileServer(int port, File tokenFile) {
+        this.port = port;
+        this.tokenFile = tokenFile;
+
+        var tokenBytes = new byte[32];
+        new SecureRandom().nextBytes(tokenBytes);
+        this.token = HexFormat.of().formatHex(tokenBytes);
+    }
+
+    public CompileServer(int port) {
+        this(port, getTokenFile(port));
+    }
+
+    /**
+     * Returns the file with the token that clients of the server on the given port must send.
+     */
+    public static File getTokenFile(int port) {
+        return new File(System.getProperty("user.home"), ".jmm/server-" + port + ".token");
+    }
+
+    public void run() {
+        warmUp();
+
+        ExecutorService executor = Executors.newCachedThreadPool();
+
+        // Only listen on the loopback interface, requests can read and write any file the server can
+        try (var socket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress())) {
+            serverSocket = socket;
+            writeToken();
+            System.out.println("Compile server listening on port " + socket.getLocalPort());
+
+            while (!socket.isClosed()) {
+                Socket client = socket.accept();
+                executor.submit(() -> handleRequest(client));
+            }
+        } catch (IOException e) {
+            // Closing the socket to stop the server interrupts the accept
+            if (!stopped) {
+                throw new RuntimeException("Compile server stopped unexpectedly", e);
+            }
+        } finally {
+            executor.shutdown();
+            tokenFile.delete();
+        }
+    }
+
+    /**
+     * Stops accepting requests. Requests that are running are still answered.
+     */
+    public void stop() {
+        stopped = true;
+
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Could not close compile server: " + e.getMessage());
+        }
+    }
+
+    private void writeToken() throws IOException {
+        var path = tokenFile.toPath();
+        Files.createDirectories(path.getParent());
+        Files.deleteIfExists(path);
+
+        // Created without permissions for others before the token is written. Without POSIX permissions, the file
+        // gets those of the folder, which is in the home of the user
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(path);
+        }
+
+        Files.writeString(path, token, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Runs the whole pipeline once, so that the first request does not pay for class loading and parser caches.
+     */
+    private void warmUp() {
+        var config = CompilerConfig.getDefault();
+
+        var parserResult = new JmmParserImpl().parse(WARM_UP_CODE, config);
+        var semanticsResult = new JmmAnalysisImpl().semanticAnalysis(parserResult);
+        var ollirResult = new JmmOptimizationImpl().toOllir(semanticsResult);
+        new JasminBackendImpl().toJasmin(ollirResult);
+    }
+
+    private void handleRequest(Socket socket) {
+        try (socket) {
+            var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            var out = new PrintStream(new BufferedOutputStream(socket.getOutputStream()), false, StandardCharsets.UTF_8);
+
+            String requestToken = in.readLine();
+            String workingDir = in.readLine();
+            String argsLine = in.readLine();
+
+            int exitCode = 0;
+            try {
+                if (requestToken == null || workingDir == null || argsLine == null) {
+                    throw new RuntimeException(
+                            "Malformed request, expected the token, the working directory and the arguments");
+                }
+
+                if (!MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8),
+                        requestToken.getBytes(StandardCharsets.UTF_8))) {
+                    throw new RuntimeException("Request without the token in '" + tokenFile + "'");
+                }
+
+                if (argsLine.equals(STOP_REQUEST)) {
+                    stop();
+                    out.println("Compile server stopped");
+                } else {
+                    compile(workingDir, argsLine, out);
+                }
+            } catch (Exception e) {
+                out.println("Compile request failed" + getStage(e).map(stage -> " during " + stage).orElse(""));
+                e.printStackTrace(out);
+                exitCode = 1;
+            }
+
+            out.println(EXIT_MARKER + exitCode);
+            out.flush();
+        } catch (IOException e) {
+            System.err.println("Could not answer compile request: " + e.getMessage());
+        }
+    }
+
+    private static void compile(String workingDir, String argsLine, PrintStream out) {
+        var args = resolveArgs(new File(workingDir), argsLine.isEmpty() ? new String[0] : argsLine.split("\t"));
+        var config = CompilerConfig.parseArgs(args);
+
+        if (CompilerConfig.getServerPort(config).isPresent()) {
+            throw new RuntimeException("Option '-s' is not supported in compile requests");
+        }
+
+        Launcher.run(config, out);
+    }
+
+    /**
+     * Returns the stage of the compiler that threw the exception, from the innermost frame in the package of a stage.
+     */
+    private static Optional<String> getStage(Throwable exception) {
+        for (var cause = exception; cause != null; cause = cause.getCause()) {
+            for (var frame : cause.getStackTrace()) {
+                var className = frame.getClassName();
+                var stage = STAGES.get(className.substring(0, Math.max(0, className.lastIndexOf('.'))));
+                if (stage != null) {
+                    return Optional.of(stage);
+                }
+            }
+        }
+
+        return Optional.empty();
+    }
+
+    /**
+     * Resolves the paths given to '-i', '-b', '-c', '-d', '-p', '-a', '-l' and '-j' against the working directory of
+     * the client.
+     */
+    private static String[] resolveArgs(File workingDir, String[] args) {
+        var resolvedArgs = new String[args.length];
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+
+            if (arg.startsWith("-i=") || arg.startsWith("-c=") || arg.startsWith("-d=") || arg.startsWith("-p=")) {
+                arg = arg.substring(0, 3) + resolvePath(workingDir, arg.substring(3));
+            } else if (arg.startsWith("-a=") || arg.startsWith("-l=") || arg.startsWith("-j=")) {
+                var output = arg.substring(3);
+                if (!output.equals(CompilerConfig.NO_OUTPUT)) {
+                    arg = arg.substring(0, 3) + resolvePath(workingDir, output);
+                }
+            } else if (arg.startsWith("-b=")) {
+                List<String> paths = new ArrayList<>();
+                for (String path : arg.substring(3).split(",")) {
+                    paths.add(resolvePath(workingDir, path.trim()));
+                }
+                arg = "-b=" + String.join(",", paths);
+            }
+
+            resolvedArgs[i] = arg;
+        }
+
+        return resolvedArgs;
+    }
+
+    private static String resolvePath(File workingDir, String path) {
+        var file = new File(path);
+        return file.isAbsolute() ? path : new File(workingDir, path).getPath();
+    }
+}
@@ -1,7 +1,12 @@
 package pt.up.fe.comp2024;
 
+import pt.up.fe.specs.util.SpecsIo;
+
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -10,6 +15,27 @@ public class CompilerConfig {
     private static final String INPUT_FILE = "inputFile";
     private static final String OPTIMIZE = "optimize";
     private static final String REGISTER = "registerAllocation";
+    private static final String BATCH = "batch";
+    private static final String THREADS = "threads";
+    private static final String SERVER = "server";
+    private static final String CACHE = "cache";
+    private static final String CLASS_OUTPUT = "classOutput";
+    private static final String PROFILE = "profile";
+    private static final String AST_OUTPUT = "astOutput";
+    private static final String OLLIR_OUTPUT = "ollirOutput";
+    private static final String JASMIN_OUTPUT = "jasminOutput";
+    private static final String LOOP_ROTATION = "loopRotation";
+
+    /**
+     * Value of the artifact output options that suppresses the artifact.
+     */
+    public static final String NO_OUTPUT = "none";
+
+    /**
+     * Value of the server option that stops the compile server that 'JMM_SERVER_PORT' points to.
+     */
+    public static final String SERVER_STOP = "stop";
+
 
 
     static Map<String, String> shortToLong = new HashMap<>();
@@ -18,6 +44,16 @@ public class CompilerConfig {
         shortToLong.put("i", CompilerConfig.INPUT_FILE);
         shortToLong.put("o", CompilerConfig.OPTIMIZE);
         shortToLong.put("r", CompilerConfig.REGISTER);
+        shortToLong.put("b", CompilerConfig.BATCH);
+        shortToLong.put("t", CompilerConfig.THREADS);
+        shortToLong.put("s", CompilerConfig.SERVER);
+        shortToLong.put("c", CompilerConfig.CACHE);
+        shortToLong.put("d", CompilerConfig.CLASS_OUTPUT);
+        shortToLong.put("p", CompilerConfig.PROFILE);
+        shortToLong.put("a", CompilerConfig.AST_OUTPUT);
+        shortToLong.put("l", CompilerConfig.OLLIR_OUTPUT);
+        shortToLong.put("j", CompilerConfig.JASMIN_OUTPUT);
+        shortToLong.put("w", CompilerConfig.LOOP_ROTATION);
     }
 
 
@@ -32,10 +68,128 @@ public class CompilerConfig {
         return Optional.of(new File(inputFile));
     }
 
+    /**
+     * Returns the files to compile in batch mode. The option accepts either a directory, in which case all the
+     * .jmm files inside it are compiled, or a comma-separated list of files.
+     */
+    public static Optional<List<File>> getBatchFiles(Map<String, String> config) {
+        var batch = config.get(BATCH);
+
+        if (batch == null) {
+            return Optional.empty();
+        }
+
+        var batchPath = new File(batch);
+        if (batchPath.isDirectory()) {
+            List<File> files = new ArrayList<>(SpecsIo.getFilesRecursive(batchPath, "jmm"));
+            files.sort(Comparator.comparing(File::getPath));
+            return Optional.of(files);
+        }
+
+        List<File> files = new ArrayList<>();
+        for (String path : batch.split(",")) {
+            if (!path.isBlank()) {
+                files.add(new File(path.trim()));
+            }
+        }
+
+        return Optional.of(files);
+    }
+
+    public static int getThreads(Map<String, String> config) {
+        return Integer.parseInt(config.getOrDefault(THREADS, String.valueOf(Runtime.getRuntime().availableProcessors())));
+    }
+
+    public static Optional<Integer> getServerPort(Map<String, String> config) {
+        var port = config.get(SERVER);
+
+        if (port == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(Integer.parseInt(port));
+    }
+
+    /**
+     * Returns the folder of the compilation cache, if caching is enabled.
+     */
+    public static Optional<File> getCacheDir(Map<String, String> config) {
+        var cacheDir = config.get(CACHE);
+
+        if (cacheDir == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(cacheDir));
+    }
+
+    /**
+     * Returns the folder where class files are written, if class files should be generated directly from OLLIR
+     * instead of printing Jasmin code.
+     */
+    public static Optional<File> getClassOutputDir(Map<String, String> config) {
+        var classOutput = config.get(CLASS_OUTPUT);
+
+        if (classOutput == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(classOutput));
+    }
+
+    /**
+     * Returns the file where the time and memory spent in each stage is written, if profiling is enabled. The
+     * measurements are written as CSV if the file has the extension '.csv', and as JSON otherwise.
+     */
+    public static Optional<File> getProfileFile(Map<String, String> config) {
+        var profile = config.get(PROFILE);
+
+        if (profile == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new File(profile));
+    }
+
+    /**
+     * Returns where the AST is written: a file, or 'none' to suppress it. When empty, the AST is printed.
+     */
+    public static Optional<String> getAstOutput(Map<String, String> config) {
+        return Optional.ofNullable(config.get(AST_OUTPUT));
+    }
+
+    /**
+     * Returns where the OLLIR code is written: a file, or 'none' to suppress it. When empty, the code is printed.
+     */
+    public static Optional<String> getOllirOutput(Map<String, String> config) {
+        return Optional.ofNullable(config.get(OLLIR_OUTPUT));
+    }
+
+    /**
+     * Returns where the Jasmin code is written: a file, or 'none' to suppress it. When empty, the code is printed.
+     */
+    public static Optional<String> getJasminOutput(Map<String, String> config) {
+        return Optional.ofNullable(config.get(JASMIN_OUTPUT));
+    }
+
     public static boolean getOptimize(Map<String, String> config) {
         return Boolean.parseBoolean(config.getOrDefault(OPTIMIZE, "false"));
     }
 
+    /**
+     * Returns if while loops test their condition at the bottom, after a guard that skips the loop. Enabled by
+     * default when optimizing, '-w=false' disables it.
+     */
+    public static boolean getLoopRotation(Map<String, String> config) {
+        var rotation = config.get(LOOP_ROTATION);
+
+        if (rotation == null) {
+            return getOptimize(config);
+        }
+
+        return Boolean.parseBoolean(rotation);
+    }
+
     public static int getRegisterAllocation(Map<String, String> config) {
         return Integer.parseInt(config.getOrDefault(REGISTER, "-1"));
     }
@@ -89,9 +243,41 @@ public class CompilerConfig {
             config.put(getLongOpt(shortOption), value);
         }
 
+        if (config.containsKey(SERVER)) {
+            // Only the server answers '-s=stop', so it reaches the launcher when no server is running
+            if (config.get(SERVER).equals(SERVER_STOP)) {
+                throw new RuntimeException("No compile server to stop, 'JMM_SERVER_PORT' must point to a running server");
+            }
+
+            int port = getServerPort(config).orElseThrow();
+            if (port < 0 || port > 65535) {
+                throw new RuntimeException("Option '-s' expects a valid port number, got '" + port + "'");
+            }
+
+            return config;
+        }
+
+        if (config.containsKey(BATCH)) {
+            var files = getBatchFiles(config).orElseThrow();
+            for (var file : files) {
+                if (!file.isFile()) {
+                    throw new RuntimeException("Could not find input file '" + file + "'");
+                }
+            }
+
+            if (getThreads(config) < 1) {
+                throw new RuntimeException("Option '-t' expects a positive number of threads");
+            }
+
+            getOptimize(config);
+            getRegisterAllocation(config);
+
+            return config;
+        }
+
         if (!config.containsKey(INPUT_FILE)) {
 
-            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>'");
+            throw new RuntimeException("Expected an input file, use '-i=<PATH_TO_FILE>' or '-b=<DIR_OR_FILES>'");
         }
 
         // make sure we save the absolute path of the input file
@@ -2,17 +2,24 @@ package pt.up.fe.comp2024;
 
 import pt.up.fe.comp.TestUtils;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
 import pt.up.fe.comp.jmm.jasmin.JasminResult;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp2024.analysis.JmmAnalysisImpl;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.backend.ClassFileBackendImpl;
 import pt.up.fe.comp2024.backend.JasminBackendImpl;
+import pt.up.fe.comp2024.backend.JasminGenerator;
 import pt.up.fe.comp2024.optimization.JmmOptimizationImpl;
 import pt.up.fe.comp2024.parser.JmmParserImpl;
 import pt.up.fe.specs.util.SpecsIo;
 import pt.up.fe.specs.util.SpecsSystem;
 
+import java.io.File;
+import java.io.PrintStream;
 import java.util.Map;
+import java.util.Optional;
 
 public class Launcher {
 
@@ -21,40 +28,158 @@ public class Launcher {
 
         Map<String, String> config = CompilerConfig.parseArgs(args);
 
+        // Server mode, keep the JVM alive and serve compile requests
+        var serverPort = CompilerConfig.getServerPort(config);
+        if (serverPort.isPresent()) {
+            new CompileServer(serverPort.get()).run();
+            return;
+        }
+
+        run(config, System.out);
+    }
+
+    /**
+     * Runs the compiler for the given configuration, printing the results to the given stream.
+     */
+    public static void run(Map<String, String> config, PrintStream out) {
+
+        // Batch mode, compile several files in parallel
+        var batchFiles = CompilerConfig.getBatchFiles(config);
+        if (batchFiles.isPresent()) {
+            var batchCompiler = new BatchCompiler(config, CompilerConfig.getThreads(config));
+            var results = batchCompiler.compile(batchFiles.get());
+            BatchCompiler.printSummary(results, out);
+
+            CompilerConfig.getProfileFile(config).ifPresent(file -> StageProfiler.write(results.stream()
+                    .flatMap(result -> result.measurements().stream())
+                    .toList(), file));
+
+            long failed = results.stream().filter(result -> !result.isSuccess()).count();
+            if (failed > 0) {
+                throw new RuntimeException("Batch compilation failed for " + failed + " of " + results.size() + " files");
+            }
+
+            return;
+        }
+
         var inputFile = CompilerConfig.getInputFile(config).orElseThrow();
         if (!inputFile.isFile()) {
-            throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + args[0] + "'.");
+            throw new RuntimeException("Option '-i' expects a path to an existing input file, got '" + inputFile + "'.");
+        }
+
+        var profileFile = CompilerConfig.getProfileFile(config);
+        var profiler = profileFile.isPresent() ? new StageProfiler(inputFile.getPath()) : StageProfiler.disabled();
+
+        try {
+            compile(inputFile, config, profiler, out);
+        } finally {
+            // Stages that ran before a failure are still reported
+            profileFile.ifPresent(file -> StageProfiler.write(profiler.getMeasurements(), file));
         }
+    }
+
+    private static void compile(File inputFile, Map<String, String> config, StageProfiler profiler, PrintStream out) {
         String code = SpecsIo.read(inputFile);
 
+        var classOutputDir = CompilerConfig.getClassOutputDir(config);
+
+        var astOutput = ArtifactOutput.of(CompilerConfig.getAstOutput(config), out);
+        var ollirOutput = ArtifactOutput.of(CompilerConfig.getOllirOutput(config), out);
+        var jasminOutput = ArtifactOutput.of(CompilerConfig.getJasminOutput(config), out);
+
+        // If this exact compilation was done before, reuse the results of all stages
+        var cache = CompilerConfig.getCacheDir(config).map(CompilationCache::new);
+        var cacheKey = CompilationCache.getKey(code, config);
+        var cachedEntry = cache.isPresent() ?
+                profiler.measure("cache", () -> cache.get().get(cacheKey)) :
+                Optional.<CompilationCache.Entry>empty();
+        if (cachedEntry.isPresent()) {
+            astOutput.write(tree -> NodeUtils.writeTree(cachedEntry.get().getRootNode(), tree));
+            ollirOutput.write(cachedEntry.get().ollirCode());
+
+            if (classOutputDir.isPresent()) {
+                writeClassFile(toClassFile(cachedEntry.get(), config), classOutputDir.get(), out);
+            } else {
+                jasminOutput.write(cachedEntry.get().jasminCode());
+            }
+
+            return;
+        }
+
         // Parsing stage
         JmmParserImpl parser = new JmmParserImpl();
-        JmmParserResult parserResult = parser.parse(code, config);
+        JmmParserResult parserResult = profiler.measure("parse", () -> parser.parse(code, config));
         TestUtils.noErrors(parserResult.getReports());
 
         // Print AST
-        System.out.println(parserResult.getRootNode().toTree());
+        astOutput.write(tree -> NodeUtils.writeTree(parserResult.getRootNode(), tree));
+
+        // The cache keeps the AST as printed, before the optimizations change it
+        var ast = cache.isPresent() ? CompilationCache.Entry.serializeAst(parserResult.getRootNode()) : null;
 
         // Semantic Analysis stage
-        JmmAnalysisImpl sema = new JmmAnalysisImpl();
+        JmmAnalysisImpl sema = new JmmAnalysisImpl(profiler);
         JmmSemanticsResult semanticsResult = sema.semanticAnalysis(parserResult);
         TestUtils.noErrors(semanticsResult.getReports());
 
         // Optimization stage
         JmmOptimizationImpl ollirGen = new JmmOptimizationImpl();
-        OllirResult ollirResult = ollirGen.toOllir(semanticsResult);
-        TestUtils.noErrors(ollirResult.getReports());
+        JmmSemanticsResult optimizedSemantics = profiler.measure("optimizeAst", () -> ollirGen.optimize(semanticsResult));
+        OllirResult ollirResult = profiler.measure("ollir", () -> ollirGen.toOllir(optimizedSemantics));
+        OllirResult optimizedOllir = profiler.measure("optimizeOllir", () -> ollirGen.optimize(ollirResult));
+        TestUtils.noErrors(optimizedOllir.getReports());
 
-        // Print OLLIR code
-        System.out.println(ollirResult.getOllirCode());
+        // Print OLLIR code, which is only rendered here when the OLLIR objects were built or optimized directly
+        ollirOutput.write(ollir -> ollir.append(optimizedOllir.getOllirCode()));
+
+        // Without a cache the Jasmin code is only needed by its output, so it is streamed while it is generated
+        if (classOutputDir.isEmpty() && cache.isEmpty()) {
+            var generator = new JasminGenerator(optimizedOllir);
+            profiler.measure("backend", () -> {
+                jasminOutput.write(generator::build);
+                return null;
+            });
+            TestUtils.noErrors(generator.getReports());
+            return;
+        }
 
         // Code generation stage
-        JasminBackendImpl jasminGen = new JasminBackendImpl();
-        JasminResult jasminResult = jasminGen.toJasmin(ollirResult);
+        JasminBackend jasminGen = newBackend(config);
+        JasminResult jasminResult = profiler.measure("backend", () -> jasminGen.toJasmin(optimizedOllir));
         TestUtils.noErrors(jasminResult.getReports());
 
-        // Print Jasmin code
-        System.out.println(jasminResult.getJasminCode());
+        // Print Jasmin code, or write the class file when generating it directly
+        if (classOutputDir.isPresent()) {
+            writeClassFile(jasminResult, classOutputDir.get(), out);
+        } else {
+            jasminOutput.write(jasminResult.getJasminCode());
+        }
+
+        var jasminCode = classOutputDir.isPresent() ? "" : jasminResult.getJasminCode();
+        cache.ifPresent(compilationCache -> compilationCache.put(cacheKey, CompilationCache.Entry.of(
+                ast, optimizedSemantics.getSymbolTable(),
+                optimizedOllir.getOllirCode(), jasminCode)));
+    }
+
+    /**
+     * Backend of the code generation stage. With '-d' class files are generated directly, without Jasmin.
+     */
+    static JasminBackend newBackend(Map<String, String> config) {
+        return CompilerConfig.getClassOutputDir(config).isPresent() ? new ClassFileBackendImpl() : new JasminBackendImpl();
+    }
+
+    /**
+     * Generates the class file of a cached compilation from its OLLIR code, which has no registers, so they are
+     * assigned again as in the compilation that was cached.
+     */
+    static JasminResult toClassFile(CompilationCache.Entry entry, Map<String, String> config) {
+        var ollirResult = new JmmOptimizationImpl().allocateRegisters(new OllirResult(entry.ollirCode(), config));
+        return new ClassFileBackendImpl().toJasmin(ollirResult);
+    }
+
+    private static void writeClassFile(JasminResult jasminResult, File outputDir, PrintStream out) {
+        var classFile = jasminResult.compile(outputDir);
+        out.println("Class file written to " + classFile.getPath());
     }
 
 }
@@ -0,0 +1,181 @@
+package pt.up.fe.comp2024;
+
+import com.google.gson.GsonBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Measures the wall time, CPU time and allocated bytes of each stage of a compilation.
+ * <p>
+ * CPU time and allocations are those of the calling thread, so a profiler must only be used by the thread that
+ * compiles its file. Work that a stage hands to other threads, e.g. to a fork-join pool, is only counted if it runs
+ * through {@link #measureTask(Supplier)}. Values that the JVM cannot measure are reported as -1.
+ */
+public class StageProfiler {
+
+    /**
+     * Cost of running one stage over one file.
+     */
+    public record Measurement(String file, String stage, long wallNanos, long cpuNanos, long allocatedBytes) {
+    }
+
+    private static final StageProfiler DISABLED = new StageProfiler(null, false);
+
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final String file;
+    private final boolean enabled;
+    private final List<Measurement> measurements;
+
+    // CPU time and allocations of the tasks of the current stage that ran on other threads
+    private final LongAdder taskCpuNanos = new LongAdder();
+    private final LongAdder taskAllocatedBytes = new LongAdder();
+    private volatile Thread measuringThread;
+
+    private StageProfiler(String file, boolean enabled) {
+        this.file = file;
+        this.enabled = enabled;
+        this.measurements = enabled ? new ArrayList<>() : Collections.emptyList();
+    }
+
+    public StageProfiler(String file) {
+        this(file, true);
+    }
+
+    /**
+     * Profiler that only runs the stages, without measuring them.
+     */
+    public static StageProfiler disabled() {
+        return DISABLED;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public List<Measurement> getMeasurements() {
+        return measurements;
+    }
+
+    /**
+     * Runs the given stage, recording its cost under the given name.
+     */
+    public <T> T measure(String stage, Supplier<T> action) {
+        if (!enabled) {
+            return action.get();
+        }
+
+        taskCpuNanos.reset();
+        taskAllocatedBytes.reset();
+        measuringThread = Thread.currentThread();
+
+        long startAllocated = getAllocatedBytes();
+        long startCpu = getCpuTime();
+        long startWall = System.nanoTime();
+
+        try {
+            return action.get();
+        } finally {
+            long wall = System.nanoTime() - startWall;
+            long cpu = startCpu < 0 ? -1 : getCpuTime() - startCpu + taskCpuNanos.sum();
+            long allocated = startAllocated < 0 ? -1 : getAllocatedBytes() - startAllocated + taskAllocatedBytes.sum();
+            measuringThread = null;
+
+            measurements.add(new Measurement(file, stage, wall, cpu, allocated));
+        }
+    }
+
+    /**
+     * Runs part of the stage being measured on another thread, adding its CPU time and allocations to the stage.
+     * <p>
+     * Tasks run by the thread that measures the stage, e.g. while it waits for them, are already counted.
+     */
+    public <T> T measureTask(Supplier<T> task) {
+        if (!enabled || Thread.currentThread() == measuringThread) {
+            return task.get();
+        }
+
+        long startAllocated = getAllocatedBytes();
+        long startCpu = getCpuTime();
+
+        try {
+            return task.get();
+        } finally {
+            if (startCpu >= 0) {
+                taskCpuNanos.add(getCpuTime() - startCpu);
+            }
+            if (startAllocated >= 0) {
+                taskAllocatedBytes.add(getAllocatedBytes() - startAllocated);
+            }
+        }
+    }
+
+    private static long getCpuTime() {
+        if (!THREAD_BEAN.isCurrentThreadCpuTimeSupported() || !THREAD_BEAN.isThreadCpuTimeEnabled()) {
+            return -1;
+        }
+
+        return THREAD_BEAN.getCurrentThreadCpuTime();
+    }
+
+    private static long getAllocatedBytes() {
+        // Allocation counters are only available in the HotSpot extension of the bean
+        if (!(THREAD_BEAN instanceof com.sun.management.ThreadMXBean hotspotBean)
+                || !hotspotBean.isThreadAllocatedMemorySupported() || !hotspotBean.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+
+        return hotspotBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Writes the measurements to the given file, as CSV if the file has the extension '.csv', and as JSON otherwise.
+     */
+    public static void write(List<Measurement> measurements, File outputFile) {
+        try (var writer = Files.newBufferedWriter(outputFile.toPath(), StandardCharsets.UTF_8)) {
+            if (outputFile.getName().toLowerCase().endsWith(".csv")) {
+                writeCsv(measurements, writer);
+            } else {
+                writeJson(measurements, writer);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write profile to '" + outputFile + "'", e);
+        }
+    }
+
+    public static void writeJson(List<Measurement> measurements, Writer writer) {
+        new GsonBuilder().setPrettyPrinting().create().toJson(measurements, writer);
+    }
+
+    public static void writeCsv(List<Measurement> measurements, Writer writer) throws IOException {
+        writer.write("file,stage,wallNanos,cpuNanos,allocatedBytes\n");
+
+        for (var measurement : measurements) {
+            writer.write(escapeCsv(measurement.file()) + "," + escapeCsv(measurement.stage()) + ","
+                    + measurement.wallNanos() + "," + measurement.cpuNanos() + "," + measurement.allocatedBytes() + "\n");
+        }
+    }
+
+    private static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+
+        return value;
+    }
+}
@@ -7,6 +7,8 @@ import pt.up.fe.comp.jmm.report.Report;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
+import java.util.function.BiFunction;
 
 /**
  *
@@ -14,10 +16,12 @@ import java.util.List;
 public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Void> implements AnalysisPass {
 
     private final List<Report> reports;
+    private final BiFunction<JmmNode, SymbolTable, Void> defaultVisit;
 
     public AnalysisVisitor() {
         reports = new ArrayList<>();
-        setDefaultValue(() -> null);
+        defaultVisit = (node, table) -> null;
+        setDefaultVisit(defaultVisit);
     }
 
     protected void addReport(Report report) {
@@ -28,6 +32,14 @@ public abstract class AnalysisVisitor extends PreorderJmmVisitor<SymbolTable, Vo
         return reports;
     }
 
+    /**
+     * @return the visit method for nodes of the kind of the given node, or empty if this pass does not visit them
+     */
+    Optional<BiFunction<JmmNode, SymbolTable, Void>> getHandler(JmmNode node) {
+        var visit = getVisit(node);
+        return visit == defaultVisit ? Optional.empty() : Optional.of(visit);
+    }
+
 
     @Override
     public List<Report> analyze(JmmNode root, SymbolTable table) {
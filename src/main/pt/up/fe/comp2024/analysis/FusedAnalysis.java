@@ -0,0 +1,157 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+/**
+ * Runs several analysis passes in a single traversal of the AST, instead of one traversal per pass.
+ * <p>
+ * The visit methods of each {@link AnalysisVisitor} are gathered per kind of node, the first time a node of that kind
+ * is found, and each node is then given to the visit methods of every pass, in the order of the passes. Each pass
+ * still sees the nodes in preorder, as when it visits the tree on its own, and keeps its own reports, which are
+ * returned pass after pass, so the reports and their order do not change. Passes that are not visitors are run on
+ * their own after the traversal.
+ * <p>
+ * A pass that throws is no longer visited, and its reports are replaced by an error, as when it runs alone.
+ */
+public class FusedAnalysis implements AnalysisPass {
+
+    private record Handler(int pass, BiFunction<JmmNode, SymbolTable, Void> visit) {
+    }
+
+    private final List<AnalysisPass> passes;
+
+    /**
+     * Visit methods of the passes for each kind of node, in the order of the passes.
+     */
+    private final Map<String, List<Handler>> handlers;
+
+    private final Exception[] failures;
+
+    /**
+     * Reports of the passes that are not visitors, once they run.
+     */
+    private final List<List<Report>> otherReports;
+
+    public FusedAnalysis(List<AnalysisPass> passes) {
+        this.passes = passes;
+        this.handlers = new HashMap<>();
+        this.failures = new Exception[passes.size()];
+        this.otherReports = new ArrayList<>(Collections.nCopies(passes.size(), List.of()));
+    }
+
+    @Override
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        visit(root, table);
+        analyzeOthers(root, table);
+
+        return merge(List.of(this));
+    }
+
+    /**
+     * Visits the node and all its descendants, in preorder.
+     */
+    void visit(JmmNode node, SymbolTable table) {
+        visitNode(node, table);
+
+        for (var child : node.getChildren()) {
+            visit(child, table);
+        }
+    }
+
+    /**
+     * Visits the node, without its descendants.
+     */
+    void visitNode(JmmNode node, SymbolTable table) {
+        for (var handler : getHandlers(node)) {
+            if (failures[handler.pass()] != null) {
+                continue;
+            }
+
+            try {
+                handler.visit().apply(node, table);
+            } catch (Exception e) {
+                failures[handler.pass()] = e;
+            }
+        }
+    }
+
+    /**
+     * Runs the passes that are not visitors on the whole tree.
+     */
+    void analyzeOthers(JmmNode root, SymbolTable table) {
+        for (int i = 0; i < passes.size(); i++) {
+            if (passes.get(i) instanceof AnalysisVisitor) {
+                continue;
+            }
+
+            try {
+                otherReports.set(i, passes.get(i).analyze(root, table));
+            } catch (Exception e) {
+                failures[i] = e;
+            }
+        }
+    }
+
+    /**
+     * Joins the reports of analyses of the same passes over different parts of the tree, given in the order the
+     * parts appear in the tree. The reports are joined pass after pass, and a pass that failed in any part is
+     * reported by its first error instead.
+     */
+    static List<Report> merge(List<FusedAnalysis> parts) {
+        List<Report> reports = new ArrayList<>();
+        int numPasses = parts.isEmpty() ? 0 : parts.get(0).passes.size();
+
+        for (int i = 0; i < numPasses; i++) {
+            int pass = i;
+            var failed = parts.stream().filter(part -> part.failures[pass] != null).findFirst();
+
+            if (failed.isPresent()) {
+                reports.add(Report.newError(Stage.SEMANTIC,
+                        -1,
+                        -1,
+                        "Problem while executing analysis pass '" + failed.get().passes.get(i).getClass() + "'",
+                        failed.get().failures[i])
+                );
+                continue;
+            }
+
+            for (var part : parts) {
+                reports.addAll(part.getReports(i));
+            }
+        }
+
+        return reports;
+    }
+
+    private List<Report> getReports(int pass) {
+        if (passes.get(pass) instanceof AnalysisVisitor visitor) {
+            return visitor.getReports();
+        }
+
+        return otherReports.get(pass);
+    }
+
+    private List<Handler> getHandlers(JmmNode node) {
+        return handlers.computeIfAbsent(node.getKind(), kind -> {
+            List<Handler> kindHandlers = new ArrayList<>();
+            for (int i = 0; i < passes.size(); i++) {
+                if (passes.get(i) instanceof AnalysisVisitor visitor) {
+                    int pass = i;
+                    visitor.getHandler(node).ifPresent(visit -> kindHandlers.add(new Handler(pass, visit)));
+                }
+            }
+
+            return kindHandlers;
+        });
+    }
+}
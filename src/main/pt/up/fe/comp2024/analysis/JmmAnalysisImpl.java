@@ -6,22 +6,35 @@ import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 import pt.up.fe.comp.jmm.parser.JmmParserResult;
 import pt.up.fe.comp.jmm.report.Report;
-import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.StageProfiler;
 import pt.up.fe.comp2024.analysis.passes.OtherSemantics;
+import pt.up.fe.comp2024.ast.ExprTypes;
 import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
 import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
 
 public class JmmAnalysisImpl implements JmmAnalysis {
 
 
-    private final List<AnalysisPass> analysisPasses;
+    private final List<Supplier<AnalysisPass>> analysisPasses;
+    private final StageProfiler profiler;
 
     public JmmAnalysisImpl() {
+        this(StageProfiler.disabled());
+    }
+
+    /**
+     * @param profiler measures the symbol table construction and the analysis
+     */
+    public JmmAnalysisImpl(StageProfiler profiler) {
 
-        this.analysisPasses = List.of(new UndeclaredVariable(), new OtherSemantics());
+        // Passes keep state while they visit, so each part of the tree that is analysed gets its own instances
+        this.analysisPasses = List.of(UndeclaredVariable::new, OtherSemantics::new);
+        this.profiler = profiler;
     }
 
     @Override
@@ -29,25 +42,19 @@ public class JmmAnalysisImpl implements JmmAnalysis {
 
         JmmNode rootNode = parserResult.getRootNode();
 
-        SymbolTable table = JmmSymbolTableBuilder.build(rootNode);
-
-        List<Report> reports = new ArrayList<>();
-
-        // Visit all nodes in the AST
-        for (var analysisPass : analysisPasses) {
-            try {
-                var passReports = analysisPass.analyze(rootNode, table);
-                reports.addAll(passReports);
-            } catch (Exception e) {
-                reports.add(Report.newError(Stage.SEMANTIC,
-                        -1,
-                        -1,
-                        "Problem while executing analysis pass '" + analysisPass.getClass() + "'",
-                        e)
-                );
-            }
-
-        }
+        SymbolTable table = profiler.measure("symbolTable", () -> JmmSymbolTableBuilder.build(rootNode));
+
+        // Passes and code generation look up the types of expressions instead of computing them again
+        profiler.measure("typing", () -> {
+            ExprTypes.annotate(rootNode, table);
+            return null;
+        });
+
+        // Visit all nodes in the AST, once for all passes, and the methods of the class concurrently. Compilations
+        // that already run in a pool share it
+        var pool = ForkJoinTask.inForkJoinPool() ? ForkJoinTask.getPool() : ForkJoinPool.commonPool();
+        List<Report> reports = profiler.measure("analysis",
+                () -> new ParallelAnalysis(analysisPasses, pool, profiler).analyze(rootNode, table));
 
         return new JmmSemanticsResult(parserResult, table, reports);
     }
@@ -0,0 +1,96 @@
+package pt.up.fe.comp2024.analysis;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.StageProfiler;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Supplier;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Runs the analysis passes over the members of the class concurrently, once the symbol table is built.
+ * <p>
+ * The program, its imports and the class declaration are analysed first, and each field and method of the class is
+ * then analysed as a separate task of a fork-join pool, by a {@link FusedAnalysis} with new instances of the passes,
+ * since passes keep their reports and the method they are in. The reports of the parts are joined in the order the
+ * parts appear in the program, so they are the same as when the whole tree is analysed at once, except that a
+ * member no longer sees what a pass kept from the method before it.
+ * <p>
+ * Classes with a single method are analysed without the pool. The tasks are measured by the profiler of the
+ * compilation, if any, so that the analysis stage includes the CPU time and allocations of the pool's threads.
+ */
+public class ParallelAnalysis implements AnalysisPass {
+
+    private final List<Supplier<AnalysisPass>> passes;
+    private final ForkJoinPool pool;
+    private final StageProfiler profiler;
+
+    public ParallelAnalysis(List<Supplier<AnalysisPass>> passes, ForkJoinPool pool, StageProfiler profiler) {
+        this.passes = passes;
+        this.pool = pool;
+        this.profiler = profiler;
+    }
+
+    public ParallelAnalysis(List<Supplier<AnalysisPass>> passes, ForkJoinPool pool) {
+        this(passes, pool, StageProfiler.disabled());
+    }
+
+    @Override
+    public List<Report> analyze(JmmNode root, SymbolTable table) {
+        // Nodes outside the class members come first in the program, so their part goes first
+        var outside = newAnalysis();
+        List<JmmNode> members = new ArrayList<>();
+        visitOutsideMembers(root, table, outside, members);
+        outside.analyzeOthers(root, table);
+
+        List<FusedAnalysis> parts = new ArrayList<>();
+        parts.add(outside);
+
+        var numMethods = members.stream().filter(member -> Kind.check(member, METHOD_DECL, MAIN_METHOD_DECL)).count();
+        if (numMethods < 2) {
+            members.forEach(member -> parts.add(analyzeMember(member, table)));
+            return FusedAnalysis.merge(parts);
+        }
+
+        List<ForkJoinTask<FusedAnalysis>> tasks = new ArrayList<>();
+        for (var member : members) {
+            tasks.add(pool.submit(() -> profiler.measureTask(() -> analyzeMember(member, table))));
+        }
+
+        for (var task : tasks) {
+            parts.add(task.join());
+        }
+
+        return FusedAnalysis.merge(parts);
+    }
+
+    private FusedAnalysis analyzeMember(JmmNode member, SymbolTable table) {
+        var analysis = newAnalysis();
+        analysis.visit(member, table);
+        return analysis;
+    }
+
+    private void visitOutsideMembers(JmmNode node, SymbolTable table, FusedAnalysis analysis, List<JmmNode> members) {
+        analysis.visitNode(node, table);
+
+        if (CLASS_DECL.check(node)) {
+            members.addAll(node.getChildren());
+            return;
+        }
+
+        for (var child : node.getChildren()) {
+            visitOutsideMembers(child, table, analysis, members);
+        }
+    }
+
+    private FusedAnalysis newAnalysis() {
+        return new FusedAnalysis(passes.stream().map(Supplier::get).toList());
+    }
+}
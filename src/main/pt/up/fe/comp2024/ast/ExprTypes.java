@@ -0,0 +1,56 @@
+package pt.up.fe.comp2024.ast;
+
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Types of the expressions of a program, each computed once by {@link TypeUtils#getExprType(JmmNode, SymbolTable)}.
+ * <p>
+ * Types are kept here instead of in attributes of the nodes, so they are not printed or serialized with the AST.
+ * Nodes do not override equals, so they are told apart by identity, and an expression that an optimization replaces
+ * is typed again.
+ */
+public class ExprTypes {
+
+    private final Map<JmmNode, Type> types;
+
+    public ExprTypes() {
+        this.types = new ConcurrentHashMap<>();
+    }
+
+    public Optional<Type> get(JmmNode expr) {
+        return Optional.ofNullable(types.get(expr));
+    }
+
+    public void put(JmmNode expr, Type type) {
+        types.put(expr, type);
+    }
+
+    /**
+     * Types every expression of the tree, operands before the expressions that use them, so computing the type of
+     * an expression only looks up the types of its operands.
+     * <p>
+     * Expressions whose type cannot be computed, as in programs with semantic errors, are left untyped, for the
+     * analysis to report.
+     */
+    public static void annotate(JmmNode node, SymbolTable table) {
+        for (var child : node.getChildren()) {
+            annotate(child, table);
+        }
+
+        if (!Kind.fromString(node.getKind()).isExpr()) {
+            return;
+        }
+
+        try {
+            TypeUtils.getExprType(node, table);
+        } catch (RuntimeException e) {
+            // Reported by the analysis passes
+        }
+    }
+}
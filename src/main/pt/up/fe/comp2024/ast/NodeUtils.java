@@ -2,6 +2,8 @@ package pt.up.fe.comp2024.ast;
 
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
+import java.io.IOException;
+
 public class NodeUtils {
 
     public static int getLine(JmmNode node) {
@@ -24,4 +26,20 @@ public class NodeUtils {
         return Boolean.parseBoolean(line);
     }
 
+    /**
+     * Appends the same text as {@link JmmNode#toTree()} to the given output, one node at a time.
+     */
+    public static void writeTree(JmmNode node, Appendable out) throws IOException {
+        writeTree(node, out, "");
+    }
+
+    private static void writeTree(JmmNode node, Appendable out, String prefix) throws IOException {
+        out.append(prefix).append(node.toString()).append("\n");
+
+        var childPrefix = prefix + "   ";
+        for (var child : node.getChildren()) {
+            writeTree(child, out, childPrefix);
+        }
+    }
+
 }
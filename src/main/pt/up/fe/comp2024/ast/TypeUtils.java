@@ -1,12 +1,11 @@
 package pt.up.fe.comp2024.ast;
 
-import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
 
 import java.util.Arrays;
-import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
@@ -23,8 +22,30 @@ public class TypeUtils {
 
     /**
      * Gets the {@link Type} of an arbitrary expression.
+     * <p>
+     * With the symbol table of a program, each type is computed once and then looked up in its {@link ExprTypes}.
      */
     public static Type getExprType(JmmNode expr, SymbolTable table) {
+        var exprTypes = table instanceof JmmSymbolTable jmmTable ? jmmTable.getExprTypes() : null;
+        if (exprTypes == null) {
+            return computeExprType(expr, table);
+        }
+
+        var cached = exprTypes.get(expr);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        // Operands are typed through this method as well, so they are cached too
+        var type = computeExprType(expr, table);
+        if (type != null) {
+            exprTypes.put(expr, type);
+        }
+
+        return type;
+    }
+
+    private static Type computeExprType(JmmNode expr, SymbolTable table) {
 
         // Check for Array and VarArgs
         boolean isArray = false;
@@ -107,31 +128,10 @@ public class TypeUtils {
         }
         String methodName = parent.get("name");
 
-        List<Symbol> symbolTableOfLocalVars = table.getLocalVariables(methodName);
-        List<Symbol> symbolTableOfParameters = table.getParameters(methodName);
-
-        for (Symbol symbol : symbolTableOfLocalVars) {
-            if (symbol.getName().equals(varName)) {
-                // found variable
-                return symbol.getType();
-            }
-        }
-
-        for (Symbol symbol : symbolTableOfParameters) {
-            if (symbol.getName().equals(varName)) {
-                // found variable
-                return symbol.getType();
-            }
-        }
-
-        // Check in fields
-        List<Symbol> fields = table.getFields();
-        for (Symbol field : fields) {
-            if (field.getName().equals(varName))
-                return field.getType();
-        }
-
-        return null;
+        // Locals, then params, then fields
+        return JmmSymbolTable.resolve(table, methodName, varName)
+                .map(resolved -> resolved.symbol().getType())
+                .orElse(null);
     }
 
     private static Type getArrayType(JmmNode arrayInit, SymbolTable table) {
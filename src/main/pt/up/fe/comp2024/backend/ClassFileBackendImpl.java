@@ -0,0 +1,21 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.jasmin.JasminBackend;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+
+/**
+ * Backend that generates class files directly from OLLIR, skipping the textual Jasmin code and its assembler.
+ */
+public class ClassFileBackendImpl implements JasminBackend {
+
+    @Override
+    public JasminResult toJasmin(OllirResult ollirResult) {
+
+        var classFileGenerator = new ClassFileGenerator(ollirResult);
+        var classBytes = classFileGenerator.build();
+
+        return new ClassFileResult(ollirResult, classBytes, classFileGenerator.getReports());
+    }
+
+}
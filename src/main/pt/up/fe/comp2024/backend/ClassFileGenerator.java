@@ -0,0 +1,841 @@
+package pt.up.fe.comp2024.backend;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.backend.CodeBuilder.VerificationType;
+import pt.up.fe.specs.util.exceptions.NotImplementedException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static pt.up.fe.comp2024.backend.Opcodes.*;
+
+/**
+ * Generates a JVM class file directly from the OLLIR objects of an OllirResult, without going through Jasmin.
+ * <p>
+ * One ClassFileGenerator instance per OllirResult.
+ */
+public class ClassFileGenerator {
+
+    private static final int MAGIC = 0xCAFEBABE;
+    // Java 8, the first version where StackMapTable frames are mandatory
+    private static final int MAJOR_VERSION = 52;
+
+    private static final int ACC_PUBLIC = 0x0001;
+    private static final int ACC_PRIVATE = 0x0002;
+    private static final int ACC_PROTECTED = 0x0004;
+    private static final int ACC_STATIC = 0x0008;
+    private static final int ACC_FINAL = 0x0010;
+    private static final int ACC_SUPER = 0x0020;
+    private static final int ACC_VARARGS = 0x0080;
+
+    private final ClassUnit ollirClass;
+
+    private final List<Report> reports;
+    private final ConstantPool pool;
+
+    private byte[] classBytes;
+
+    private Method currentMethod;
+    private CodeBuilder code;
+    private int labelCounter;
+
+    public ClassFileGenerator(OllirResult ollirResult) {
+        this.ollirClass = ollirResult.getOllirClass();
+        this.reports = new ArrayList<>();
+        this.pool = new ConstantPool();
+        this.classBytes = null;
+    }
+
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    public byte[] build() {
+
+        // This way, build is idempotent
+        if (classBytes == null) {
+            try {
+                classBytes = generateClass();
+            } catch (IOException e) {
+                throw new RuntimeException("Could not generate class file for '" + ollirClass.getClassName() + "'", e);
+            }
+        }
+
+        return classBytes;
+    }
+
+    private byte[] generateClass() throws IOException {
+        var className = ollirClass.getClassName();
+        var superName = getFullName(ollirClass.getSuperClass() != null ? ollirClass.getSuperClass() : "Object");
+
+        int thisIndex = pool.addClass(className);
+        int superIndex = pool.addClass(superName);
+
+        // Fields and methods go first to a buffer, since they add entries to the constant pool
+        var membersBytes = new ByteArrayOutputStream();
+        var members = new DataOutputStream(membersBytes);
+
+        members.writeShort(ollirClass.getNumFields());
+        for (var field : ollirClass.getFields()) {
+            generateField(field, members);
+        }
+
+        var methods = ollirClass.getMethods().stream()
+                .filter(method -> !method.isConstructMethod())
+                .toList();
+
+        // There is always one constructor that receives no arguments, generated here instead of from OLLIR
+        members.writeShort(methods.size() + 1);
+        generateDefaultConstructor(superName, members);
+        for (var method : methods) {
+            generateMethod(method, members);
+        }
+
+        // No class attributes
+        members.writeShort(0);
+
+        var classBytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(classBytes);
+
+        out.writeInt(MAGIC);
+        out.writeShort(0);
+        out.writeShort(MAJOR_VERSION);
+        pool.write(out);
+        out.writeShort(ACC_PUBLIC | ACC_SUPER);
+        out.writeShort(thisIndex);
+        out.writeShort(superIndex);
+        // No interfaces
+        out.writeShort(0);
+        membersBytes.writeTo(out);
+
+        return classBytes.toByteArray();
+    }
+
+    private void generateField(Field field, DataOutputStream out) throws IOException {
+        int access = field.getFieldAccessModifier() != AccessModifier.DEFAULT ?
+                getAccessFlag(field.getFieldAccessModifier()) :
+                ACC_PRIVATE;
+
+        if (field.isStaticField()) {
+            access |= ACC_STATIC;
+        }
+
+        if (field.isFinalField()) {
+            access |= ACC_FINAL;
+        }
+
+        out.writeShort(access);
+        out.writeShort(pool.addUtf8(field.getFieldName()));
+        out.writeShort(pool.addUtf8(getDescriptor(field.getFieldType())));
+        // No field attributes
+        out.writeShort(0);
+    }
+
+    private void generateDefaultConstructor(String superName, DataOutputStream out) throws IOException {
+        code = new CodeBuilder(pool);
+
+        code.op(ALOAD_0, 1);
+        code.opShort(INVOKESPECIAL, pool.addMethodRef(superName, "<init>", "()V"), -1);
+        code.op(RETURN, 0);
+
+        var initialLocals = new VerificationType[]{VerificationType.object(ollirClass.getClassName())};
+        writeMethod(ACC_PUBLIC, "<init>", "()V", 1, initialLocals, out);
+    }
+
+    private void generateMethod(Method method, DataOutputStream out) throws IOException {
+
+        // set method
+        currentMethod = method;
+        code = new CodeBuilder(pool);
+        labelCounter = 0;
+
+        int maxLocals = getMaxLocals(method);
+        var instructions = method.getInstructions();
+        var entryStates = computeEntryStates(method, maxLocals);
+
+        boolean fallsThrough = true;
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+            var state = entryStates[i];
+
+            // Unreachable instructions are not emitted, the type checker would need frames for them
+            if (state == null) {
+                fallsThrough = false;
+                continue;
+            }
+
+            var labels = method.getLabels(instruction);
+            for (var label : labels) {
+                code.label(label);
+            }
+
+            // Branch targets, and code only reachable through branches, need a frame
+            if (!labels.isEmpty() || !fallsThrough) {
+                code.frame(state, List.of());
+            }
+
+            generateInstruction(instruction, state);
+            fallsThrough = !(instruction instanceof GotoInstruction) && !(instruction instanceof ReturnInstruction);
+        }
+
+        int access = getAccessFlag(method.getMethodAccessModifier());
+        if (method.isStaticMethod()) {
+            access |= ACC_STATIC;
+        }
+
+        if (method.isFinalMethod()) {
+            access |= ACC_FINAL;
+        }
+
+        if (method.isVarargs()) {
+            access |= ACC_VARARGS;
+        }
+
+        writeMethod(access, method.getMethodName(), getMethodDescriptor(method), maxLocals, getInitialLocals(method, maxLocals), out);
+
+        // unset method
+        currentMethod = null;
+    }
+
+    private void writeMethod(int access, String name, String descriptor, int maxLocals,
+                             VerificationType[] initialLocals, DataOutputStream out) throws IOException {
+        var bytecode = code.toByteArray();
+
+        var codeAttribute = new ByteArrayOutputStream();
+        var attributeOut = new DataOutputStream(codeAttribute);
+
+        attributeOut.writeShort(code.getMaxStack());
+        attributeOut.writeShort(maxLocals);
+        attributeOut.writeInt(bytecode.length);
+        attributeOut.write(bytecode);
+        // No exception table
+        attributeOut.writeShort(0);
+
+        if (code.hasFrames()) {
+            var stackMapTable = code.getStackMapTable(initialLocals);
+            attributeOut.writeShort(1);
+            attributeOut.writeShort(pool.addUtf8("StackMapTable"));
+            attributeOut.writeInt(stackMapTable.length);
+            attributeOut.write(stackMapTable);
+        } else {
+            attributeOut.writeShort(0);
+        }
+
+        out.writeShort(access);
+        out.writeShort(pool.addUtf8(name));
+        out.writeShort(pool.addUtf8(descriptor));
+        // Only the Code attribute
+        out.writeShort(1);
+        out.writeShort(pool.addUtf8("Code"));
+        out.writeInt(codeAttribute.size());
+        codeAttribute.writeTo(out);
+    }
+
+    private int getAccessFlag(AccessModifier modifier) {
+        return switch (modifier) {
+            case PUBLIC -> ACC_PUBLIC;
+            case PRIVATE -> ACC_PRIVATE;
+            case PROTECTED -> ACC_PROTECTED;
+            case DEFAULT -> 0;
+        };
+    }
+
+    private int getMaxLocals(Method method) {
+        // 'this' and the parameters always have a register, even if they are not used
+        int maxLocals = (method.isStaticMethod() ? 0 : 1) + method.getParams().size();
+
+        for (var descriptor : method.getVarTable().values()) {
+            if (descriptor.getScope() != VarScope.FIELD) {
+                maxLocals = Math.max(maxLocals, descriptor.getVirtualReg() + 1);
+            }
+        }
+
+        return maxLocals;
+    }
+
+    // Frames
+
+    /**
+     * Types of the locals of the implicit frame at the start of the method.
+     */
+    private VerificationType[] getInitialLocals(Method method, int maxLocals) {
+        var locals = new VerificationType[maxLocals];
+        Arrays.fill(locals, VerificationType.TOP);
+
+        if (!method.isStaticMethod()) {
+            locals[0] = VerificationType.object(ollirClass.getClassName());
+        }
+
+        for (var param : method.getParams()) {
+            var operand = (Operand) param;
+            locals[getRegister(method, operand.getName())] = getVerificationType(operand.getType());
+        }
+
+        return locals;
+    }
+
+    /**
+     * Computes the types of the locals at the entry of each instruction, with a forward dataflow analysis over the
+     * instructions of the method. A register assigned with different types on different paths has type TOP.
+     *
+     * @return the types of the locals for each instruction, or null for unreachable instructions
+     */
+    private VerificationType[][] computeEntryStates(Method method, int maxLocals) {
+        var instructions = method.getInstructions();
+        var states = new VerificationType[instructions.size()][];
+
+        if (instructions.isEmpty()) {
+            return states;
+        }
+
+        Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+        }
+
+        states[0] = getInitialLocals(method, maxLocals);
+
+        var worklist = new ArrayDeque<Integer>();
+        worklist.add(0);
+
+        while (!worklist.isEmpty()) {
+            int index = worklist.poll();
+            var instruction = instructions.get(index);
+            var exitState = states[index].clone();
+
+            // Only assignments to variables change the type of a register
+            if (instruction instanceof AssignInstruction assign && !(assign.getDest() instanceof ArrayOperand)) {
+                var dest = (Operand) assign.getDest();
+                exitState[getRegister(method, dest.getName())] = getVerificationType(dest.getType());
+            }
+
+            for (int successor : getSuccessors(method, instruction, index, indexes)) {
+                if (mergeState(states, successor, exitState)) {
+                    worklist.add(successor);
+                }
+            }
+        }
+
+        return states;
+    }
+
+    private List<Integer> getSuccessors(Method method, Instruction instruction, int index,
+                                        Map<Instruction, Integer> indexes) {
+        List<Integer> successors = new ArrayList<>(2);
+
+        if (instruction instanceof GotoInstruction gotoInstruction) {
+            successors.add(getLabelIndex(method, gotoInstruction.getLabel(), indexes));
+        } else if (instruction instanceof CondBranchInstruction branch) {
+            successors.add(getLabelIndex(method, branch.getLabel(), indexes));
+        }
+
+        boolean fallsThrough = !(instruction instanceof GotoInstruction) && !(instruction instanceof ReturnInstruction);
+        if (fallsThrough && index + 1 < method.getInstructions().size()) {
+            successors.add(index + 1);
+        }
+
+        return successors;
+    }
+
+    private int getLabelIndex(Method method, String label, Map<Instruction, Integer> indexes) {
+        var target = method.getLabels().get(label);
+        if (target == null) {
+            throw new RuntimeException("Branch to undefined label '" + label + "' in method '" + method.getMethodName() + "'");
+        }
+
+        return indexes.get(target);
+    }
+
+    /**
+     * @return true if the entry state of the instruction changed
+     */
+    private boolean mergeState(VerificationType[][] states, int index, VerificationType[] incoming) {
+        var current = states[index];
+        if (current == null) {
+            states[index] = incoming.clone();
+            return true;
+        }
+
+        boolean changed = false;
+        for (int reg = 0; reg < current.length; reg++) {
+            if (current[reg] != VerificationType.TOP && !current[reg].equals(incoming[reg])) {
+                current[reg] = VerificationType.TOP;
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private VerificationType getVerificationType(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32, BOOLEAN -> VerificationType.INTEGER;
+            case ARRAYREF -> VerificationType.object(getDescriptor(type));
+            case STRING, OBJECTREF, CLASS, THIS -> VerificationType.object(getInternalName(type));
+            case VOID -> throw new IllegalStateException("Variables cannot have type void");
+        };
+    }
+
+    // Instructions
+
+    private void generateInstruction(Instruction instruction, VerificationType[] state) {
+        if (instruction instanceof AssignInstruction assign) {
+            generateAssign(assign, state);
+        } else if (instruction instanceof CallInstruction call) {
+            generateCall(call);
+
+            // The result of a call used as a statement is discarded
+            if (call.getReturnType().getTypeOfElement() != ElementType.VOID) {
+                code.op(POP, -1);
+            }
+        } else if (instruction instanceof PutFieldInstruction putField) {
+            generatePutField(putField);
+        } else if (instruction instanceof GetFieldInstruction getField) {
+            generateGetField(getField);
+            code.op(POP, -1);
+        } else if (instruction instanceof ReturnInstruction returnInstruction) {
+            generateReturn(returnInstruction);
+        } else if (instruction instanceof GotoInstruction gotoInstruction) {
+            code.jump(GOTO, gotoInstruction.getLabel(), 0);
+        } else if (instruction instanceof CondBranchInstruction branch) {
+            generateBranch(branch);
+        } else {
+            throw new NotImplementedException(instruction.getClass());
+        }
+    }
+
+    private void generateAssign(AssignInstruction assign, VerificationType[] state) {
+        var dest = (Operand) assign.getDest();
+
+        if (dest instanceof ArrayOperand arrayDest) {
+            var arrayType = currentMethod.getVarTable().get(arrayDest.getName()).getVarType();
+            loadOperand(arrayDest.getName(), arrayType);
+            loadElement(arrayDest.getIndexOperands().get(0));
+
+            generateValue(assign.getRhs(), state, List.of(getVerificationType(arrayType), VerificationType.INTEGER));
+
+            code.op(isReference(dest.getType()) ? AASTORE : IASTORE, -3);
+            return;
+        }
+
+        if (generateIncrement(dest, assign.getRhs())) {
+            return;
+        }
+
+        generateValue(assign.getRhs(), state, List.of());
+
+        int reg = getRegister(currentMethod, dest.getName());
+        if (isReference(dest.getType())) {
+            code.local(ASTORE, ASTORE_0, reg, -1);
+        } else {
+            code.local(ISTORE, ISTORE_0, reg, -1);
+        }
+    }
+
+    /**
+     * Uses 'iinc' for assignments of the form 'a = a + c' or 'a = a - c'.
+     *
+     * @return true if the increment was generated
+     */
+    private boolean generateIncrement(Operand dest, Instruction rhs) {
+        if (!(rhs instanceof BinaryOpInstruction binaryOp) || dest.getType().getTypeOfElement() != ElementType.INT32) {
+            return false;
+        }
+
+        var opType = binaryOp.getOperation().getOpType();
+        var left = binaryOp.getLeftOperand();
+        var right = binaryOp.getRightOperand();
+
+        Integer increment = null;
+        if (opType == OperationType.ADD && isSameVariable(dest, left) && right instanceof LiteralElement literal) {
+            increment = parseLiteral(literal);
+        } else if (opType == OperationType.ADD && isSameVariable(dest, right) && left instanceof LiteralElement literal) {
+            increment = parseLiteral(literal);
+        } else if (opType == OperationType.SUB && isSameVariable(dest, left) && right instanceof LiteralElement literal) {
+            increment = -parseLiteral(literal);
+        }
+
+        if (increment == null || increment < Short.MIN_VALUE || increment > Short.MAX_VALUE) {
+            return false;
+        }
+
+        code.iinc(getRegister(currentMethod, dest.getName()), increment);
+        return true;
+    }
+
+    private boolean isSameVariable(Operand dest, Element element) {
+        return element instanceof Operand operand && !(element instanceof ArrayOperand)
+                && operand.getName().equals(dest.getName());
+    }
+
+    /**
+     * Generates an instruction that leaves its value on the stack.
+     *
+     * @param stack types already on the stack, needed for the frames of comparisons
+     */
+    private void generateValue(Instruction instruction, VerificationType[] state, List<VerificationType> stack) {
+        if (instruction instanceof SingleOpInstruction singleOp) {
+            loadElement(singleOp.getSingleOperand());
+        } else if (instruction instanceof BinaryOpInstruction binaryOp) {
+            generateBinaryOp(binaryOp, state, stack);
+        } else if (instruction instanceof UnaryOpInstruction unaryOp) {
+            generateUnaryOp(unaryOp);
+        } else if (instruction instanceof CallInstruction call) {
+            generateCall(call);
+        } else if (instruction instanceof GetFieldInstruction getField) {
+            generateGetField(getField);
+        } else {
+            throw new NotImplementedException(instruction.getClass());
+        }
+    }
+
+    private void generateBinaryOp(BinaryOpInstruction binaryOp, VerificationType[] state, List<VerificationType> stack) {
+        loadElement(binaryOp.getLeftOperand());
+        loadElement(binaryOp.getRightOperand());
+
+        var opType = binaryOp.getOperation().getOpType();
+        var opcode = switch (opType) {
+            case ADD -> IADD;
+            case SUB -> ISUB;
+            case MUL -> IMUL;
+            case DIV -> IDIV;
+            case SHL -> ISHL;
+            case SHR -> ISHR;
+            case SHRR -> IUSHR;
+            case XOR -> IXOR;
+            case AND, ANDB -> IAND;
+            case OR, ORB -> IOR;
+            default -> -1;
+        };
+
+        if (opcode != -1) {
+            code.op(opcode, -1);
+            return;
+        }
+
+        // Comparisons have no instruction that produces a boolean, use a branch to push 0 or 1
+        var trueLabel = newLabel("true");
+        var endLabel = newLabel("end");
+
+        code.jump(getCompareOpcode(opType), trueLabel, -2);
+        code.op(ICONST_0, 1);
+        code.jump(GOTO, endLabel, 0);
+
+        code.setStackSize(code.getStackSize() - 1);
+        code.label(trueLabel);
+        code.frame(state, stack);
+        code.op(ICONST_0 + 1, 1);
+
+        var stackWithResult = new ArrayList<>(stack);
+        stackWithResult.add(VerificationType.INTEGER);
+        code.label(endLabel);
+        code.frame(state, stackWithResult);
+    }
+
+    private void generateUnaryOp(UnaryOpInstruction unaryOp) {
+        var opType = unaryOp.getOperation().getOpType();
+        if (opType != OperationType.NOT && opType != OperationType.NOTB) {
+            throw new NotImplementedException(opType);
+        }
+
+        // Booleans are 0 or 1, so the negation is a xor with 1
+        loadElement(unaryOp.getOperand());
+        code.op(ICONST_0 + 1, 1);
+        code.op(IXOR, -1);
+    }
+
+    private void generateBranch(CondBranchInstruction branch) {
+        var condition = branch.getCondition();
+
+        if (condition instanceof BinaryOpInstruction binaryOp && isComparison(binaryOp.getOperation().getOpType())) {
+            var opType = binaryOp.getOperation().getOpType();
+            loadElement(binaryOp.getLeftOperand());
+
+            // Comparisons with zero have their own instructions
+            if (binaryOp.getRightOperand() instanceof LiteralElement literal && parseLiteral(literal) == 0) {
+                code.jump(getCompareOpcode(opType) - (IF_ICMPEQ - IFEQ), branch.getLabel(), -1);
+                return;
+            }
+
+            loadElement(binaryOp.getRightOperand());
+            code.jump(getCompareOpcode(opType), branch.getLabel(), -2);
+            return;
+        }
+
+        if (condition instanceof UnaryOpInstruction unaryOp
+                && (unaryOp.getOperation().getOpType() == OperationType.NOTB
+                || unaryOp.getOperation().getOpType() == OperationType.NOT)) {
+            loadElement(unaryOp.getOperand());
+            code.jump(IFEQ, branch.getLabel(), -1);
+            return;
+        }
+
+        // Any other condition is evaluated to a boolean
+        generateValue(condition, null, List.of());
+        code.jump(IFNE, branch.getLabel(), -1);
+    }
+
+    private boolean isComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH, GTH, EQ, NEQ, LTE, GTE -> true;
+            default -> false;
+        };
+    }
+
+    private int getCompareOpcode(OperationType opType) {
+        return switch (opType) {
+            case LTH -> IF_ICMPLT;
+            case GTH -> IF_ICMPGT;
+            case EQ -> IF_ICMPEQ;
+            case NEQ -> IF_ICMPNE;
+            case LTE -> IF_ICMPLE;
+            case GTE -> IF_ICMPGE;
+            default -> throw new NotImplementedException(opType);
+        };
+    }
+
+    private void generateCall(CallInstruction call) {
+        var invocationType = call.getInvocationType();
+        var caller = (Operand) call.getCaller();
+        var arguments = call.getArguments();
+
+        switch (invocationType) {
+            case NEW -> {
+                if (call.getReturnType() instanceof ArrayType arrayType) {
+                    loadElement(arguments.get(0));
+                    var elementType = arrayType.getElementType();
+                    if (isReference(elementType)) {
+                        code.opShort(ANEWARRAY, pool.addClass(getInternalName(elementType)), 0);
+                    } else {
+                        code.opByte(NEWARRAY, T_INT, 0);
+                    }
+                } else {
+                    // The constructor is called by the invokespecial that follows in OLLIR
+                    code.opShort(NEW, pool.addClass(getInternalName(call.getReturnType())), 1);
+                }
+            }
+            case arraylength -> {
+                loadElement(caller);
+                code.op(ARRAYLENGTH, 0);
+            }
+            case invokestatic -> {
+                loadArguments(arguments);
+                int methodRef = pool.addMethodRef(getFullName(caller.getName()), getMethodName(call),
+                        getCallDescriptor(call));
+                code.opShort(INVOKESTATIC, methodRef, getResultSize(call) - arguments.size());
+            }
+            case invokevirtual, invokespecial -> {
+                loadElement(caller);
+                loadArguments(arguments);
+
+                boolean isConstructor = invocationType == CallType.invokespecial;
+                var methodName = isConstructor ? "<init>" : getMethodName(call);
+                var owner = isConstructor && caller.getType().getTypeOfElement() == ElementType.THIS ?
+                        getFullName(ollirClass.getSuperClass() != null ? ollirClass.getSuperClass() : "Object") :
+                        getInternalName(caller.getType());
+                var descriptor = isConstructor ? getArgumentsDescriptor(arguments) + "V" : getCallDescriptor(call);
+
+                int methodRef = pool.addMethodRef(owner, methodName, descriptor);
+                int resultSize = isConstructor ? 0 : getResultSize(call);
+                code.opShort(isConstructor ? INVOKESPECIAL : INVOKEVIRTUAL, methodRef, resultSize - arguments.size() - 1);
+            }
+            default -> throw new NotImplementedException(invocationType);
+        }
+    }
+
+    private void loadArguments(List<Element> arguments) {
+        for (var argument : arguments) {
+            loadElement(argument);
+        }
+    }
+
+    private String getMethodName(CallInstruction call) {
+        var literal = ((LiteralElement) call.getMethodName()).getLiteral();
+        return literal.substring(1, literal.length() - 1);
+    }
+
+    private int getResultSize(CallInstruction call) {
+        return call.getReturnType().getTypeOfElement() == ElementType.VOID ? 0 : 1;
+    }
+
+    private void generatePutField(PutFieldInstruction putField) {
+        var field = putField.getField();
+
+        loadElement(putField.getObject());
+        loadElement(putField.getValue());
+
+        int fieldRef = pool.addFieldRef(ollirClass.getClassName(), field.getName(), getDescriptor(field.getType()));
+        code.opShort(PUTFIELD, fieldRef, -2);
+    }
+
+    private void generateGetField(GetFieldInstruction getField) {
+        var field = getField.getField();
+
+        loadElement(getField.getObject());
+
+        int fieldRef = pool.addFieldRef(ollirClass.getClassName(), field.getName(), getDescriptor(field.getType()));
+        code.opShort(GETFIELD, fieldRef, 0);
+    }
+
+    private void generateReturn(ReturnInstruction returnInstruction) {
+        if (!returnInstruction.hasReturnValue()) {
+            code.op(RETURN, 0);
+            return;
+        }
+
+        loadElement(returnInstruction.getOperand());
+        code.op(isReference(returnInstruction.getReturnType()) ? ARETURN : IRETURN, -1);
+    }
+
+    // Operands
+
+    private void loadElement(Element element) {
+        if (element instanceof LiteralElement literal) {
+            loadInteger(parseLiteral(literal));
+        } else if (element instanceof ArrayOperand arrayOperand) {
+            var arrayType = currentMethod.getVarTable().get(arrayOperand.getName()).getVarType();
+            loadOperand(arrayOperand.getName(), arrayType);
+            loadElement(arrayOperand.getIndexOperands().get(0));
+            code.op(isReference(arrayOperand.getType()) ? AALOAD : IALOAD, -1);
+        } else if (element instanceof Operand operand) {
+            loadOperand(operand.getName(), operand.getType());
+        } else {
+            throw new NotImplementedException(element.getClass());
+        }
+    }
+
+    private void loadOperand(String name, Type type) {
+        if (type.getTypeOfElement() == ElementType.THIS || name.equals("this")) {
+            code.op(ALOAD_0, 1);
+            return;
+        }
+
+        int reg = getRegister(currentMethod, name);
+        if (isReference(type)) {
+            code.local(ALOAD, ALOAD_0, reg, 1);
+        } else {
+            code.local(ILOAD, ILOAD_0, reg, 1);
+        }
+    }
+
+    private void loadInteger(int value) {
+        if (value >= -1 && value <= 5) {
+            code.op(ICONST_0 + value, 1);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            code.opByte(BIPUSH, value, 1);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            code.opShort(SIPUSH, value, 1);
+        } else {
+            int index = pool.addInteger(value);
+            if (index <= 0xFF) {
+                code.opByte(LDC, index, 1);
+            } else {
+                code.opShort(LDC_W, index, 1);
+            }
+        }
+    }
+
+    private int parseLiteral(LiteralElement literal) {
+        try {
+            return Integer.parseInt(literal.getLiteral());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Expected an integer literal, found '" + literal.getLiteral() + "'", e);
+        }
+    }
+
+    private int getRegister(Method method, String name) {
+        var descriptor = method.getVarTable().get(name);
+        if (descriptor == null) {
+            throw new RuntimeException("Variable '" + name + "' not found in method '" + method.getMethodName() + "'");
+        }
+
+        return descriptor.getVirtualReg();
+    }
+
+    private String newLabel(String prefix) {
+        // '$' cannot appear in OLLIR labels, so these never clash with them
+        return "$" + prefix + labelCounter++;
+    }
+
+    // Types
+
+    private boolean isReference(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32, BOOLEAN -> false;
+            case ARRAYREF, OBJECTREF, CLASS, THIS, STRING -> true;
+            case VOID -> throw new IllegalStateException("Type void has no values");
+        };
+    }
+
+    private String getMethodDescriptor(Method method) {
+        var descriptor = new StringBuilder("(");
+        for (var param : method.getParams()) {
+            descriptor.append(getDescriptor(param.getType()));
+        }
+
+        return descriptor.append(")").append(getDescriptor(method.getReturnType())).toString();
+    }
+
+    private String getCallDescriptor(CallInstruction call) {
+        return getArgumentsDescriptor(call.getArguments()) + getDescriptor(call.getReturnType());
+    }
+
+    private String getArgumentsDescriptor(List<Element> arguments) {
+        var descriptor = new StringBuilder("(");
+        for (var argument : arguments) {
+            descriptor.append(getDescriptor(argument.getType()));
+        }
+
+        return descriptor.append(")").toString();
+    }
+
+    private String getDescriptor(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case INT32 -> "I";
+            case BOOLEAN -> "Z";
+            case VOID -> "V";
+            case ARRAYREF -> "[" + getDescriptor(((ArrayType) type).getElementType());
+            case STRING, OBJECTREF, CLASS, THIS -> "L" + getInternalName(type) + ";";
+        };
+    }
+
+    /**
+     * Name of the class of a reference type, in the internal form used by class files.
+     */
+    private String getInternalName(Type type) {
+        return switch (type.getTypeOfElement()) {
+            case STRING -> "java/lang/String";
+            case THIS -> ollirClass.getClassName();
+            case OBJECTREF, CLASS -> getFullName(((ClassType) type).getName());
+            case ARRAYREF -> getDescriptor(type);
+            default -> throw new IllegalStateException("Type " + type + " is not a class");
+        };
+    }
+
+    private String getFullName(String shortName) {
+        if (shortName.equals(ollirClass.getClassName())) {
+            return shortName;
+        }
+
+        for (String importName : ollirClass.getImports()) {
+            if (importName.equals(shortName) || importName.endsWith("." + shortName)) {
+                return importName.replace('.', '/');
+            }
+        }
+
+        return switch (shortName) {
+            case "Object" -> "java/lang/Object";
+            case "String" -> "java/lang/String";
+            default -> shortName;
+        };
+    }
+}
@@ -0,0 +1,42 @@
+package pt.up.fe.comp2024.backend;
+
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Result of the class file backend. There is no Jasmin code, compiling writes the generated class file directly.
+ */
+public class ClassFileResult extends JasminResult {
+
+    private final byte[] classBytes;
+
+    public ClassFileResult(OllirResult ollirResult, byte[] classBytes, List<Report> reports) {
+        super(ollirResult, null, reports);
+        this.classBytes = classBytes;
+    }
+
+    public byte[] getClassBytes() {
+        return classBytes;
+    }
+
+    @Override
+    public File compile(File outputDir) {
+        var classFile = new File(outputDir, getClassName() + ".class");
+
+        try {
+            // Safe to call concurrently, batch compilations write to the same folder
+            Files.createDirectories(outputDir.toPath());
+            Files.write(classFile.toPath(), classBytes);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write class file '" + classFile + "'", e);
+        }
+
+        return classFile;
+    }
+}
@@ -0,0 +1,287 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static pt.up.fe.comp2024.backend.Opcodes.*;
+
+/**
+ * Bytecode of a single method, with labels resolved when the code is finished.
+ * <p>
+ * Every instruction is emitted together with its effect on the operand stack, which is used to compute the maximum
+ * stack size of the method. Stack map frames are recorded by the caller and encoded into a StackMapTable attribute.
+ */
+public class CodeBuilder {
+
+    public static final int TAG_TOP = 0;
+    public static final int TAG_INTEGER = 1;
+    public static final int TAG_OBJECT = 7;
+
+    /**
+     * A verification type of the JVM type checker, objects carry the internal name of their class.
+     */
+    public record VerificationType(int tag, String className) {
+
+        public static final VerificationType TOP = new VerificationType(TAG_TOP, null);
+        public static final VerificationType INTEGER = new VerificationType(TAG_INTEGER, null);
+
+        public static VerificationType object(String className) {
+            return new VerificationType(TAG_OBJECT, className);
+        }
+    }
+
+    private record Frame(List<VerificationType> locals, List<VerificationType> stack) {
+    }
+
+    private record Jump(int instructionOffset, int patchOffset, String label) {
+    }
+
+    private final ConstantPool pool;
+
+    private byte[] code;
+    private int length;
+
+    private final Map<String, Integer> labels;
+    private final List<Jump> jumps;
+    private final TreeMap<Integer, Frame> frames;
+
+    private int stackSize;
+    private int maxStack;
+
+    public CodeBuilder(ConstantPool pool) {
+        this.pool = pool;
+        this.code = new byte[64];
+        this.length = 0;
+        this.labels = new HashMap<>();
+        this.jumps = new ArrayList<>();
+        this.frames = new TreeMap<>();
+        this.stackSize = 0;
+        this.maxStack = 0;
+    }
+
+    public int getOffset() {
+        return length;
+    }
+
+    public int getStackSize() {
+        return stackSize;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Emits an instruction without operands.
+     */
+    public void op(int opcode, int stackDelta) {
+        writeByte(opcode);
+        updateStack(stackDelta);
+    }
+
+    /**
+     * Emits an instruction with a one byte operand.
+     */
+    public void opByte(int opcode, int operand, int stackDelta) {
+        writeByte(opcode);
+        writeByte(operand);
+        updateStack(stackDelta);
+    }
+
+    /**
+     * Emits an instruction with a two bytes operand, such as a constant pool index.
+     */
+    public void opShort(int opcode, int operand, int stackDelta) {
+        writeByte(opcode);
+        writeShort(operand);
+        updateStack(stackDelta);
+    }
+
+    /**
+     * Emits a load or store of a local variable, using the shortest encoding available.
+     *
+     * @param opcode      one of ILOAD, ALOAD, ISTORE or ASTORE
+     * @param shortOpcode opcode of the variant for register 0, e.g. ILOAD_0
+     */
+    public void local(int opcode, int shortOpcode, int register, int stackDelta) {
+        if (register <= 3) {
+            op(shortOpcode + register, stackDelta);
+        } else if (register <= 0xFF) {
+            opByte(opcode, register, stackDelta);
+        } else {
+            writeByte(WIDE);
+            opShort(opcode, register, stackDelta);
+        }
+    }
+
+    public void iinc(int register, int increment) {
+        if (register <= 0xFF && increment >= Byte.MIN_VALUE && increment <= Byte.MAX_VALUE) {
+            writeByte(IINC);
+            writeByte(register);
+            writeByte(increment);
+        } else {
+            writeByte(WIDE);
+            writeByte(IINC);
+            writeShort(register);
+            writeShort(increment);
+        }
+    }
+
+    /**
+     * Emits a branch to the given label, the offset is filled in when the code is finished.
+     */
+    public void jump(int opcode, String label, int stackDelta) {
+        int instructionOffset = length;
+        writeByte(opcode);
+        jumps.add(new Jump(instructionOffset, length, label));
+        writeShort(0);
+        updateStack(stackDelta);
+    }
+
+    public void label(String label) {
+        if (labels.putIfAbsent(label, length) != null) {
+            throw new RuntimeException("Label '" + label + "' is defined more than once");
+        }
+    }
+
+    /**
+     * Records the stack map frame of the instruction at the current offset. Trailing TOP locals are dropped.
+     */
+    public void frame(VerificationType[] locals, List<VerificationType> stack) {
+        frames.put(length, new Frame(trimLocals(locals), List.copyOf(stack)));
+    }
+
+    private static List<VerificationType> trimLocals(VerificationType[] locals) {
+        int numLocals = locals.length;
+        while (numLocals > 0 && locals[numLocals - 1] == VerificationType.TOP) {
+            numLocals--;
+        }
+
+        return List.of(Arrays.copyOf(locals, numLocals));
+    }
+
+    /**
+     * Resolves all branches and returns the bytecode of the method.
+     */
+    public byte[] toByteArray() {
+        for (var jump : jumps) {
+            var target = labels.get(jump.label());
+            if (target == null) {
+                throw new RuntimeException("Branch to undefined label '" + jump.label() + "'");
+            }
+
+            int offset = target - jump.instructionOffset();
+            if (offset < Short.MIN_VALUE || offset > Short.MAX_VALUE) {
+                throw new RuntimeException("Branch to label '" + jump.label() + "' is too far away");
+            }
+
+            code[jump.patchOffset()] = (byte) (offset >> 8);
+            code[jump.patchOffset() + 1] = (byte) offset;
+        }
+
+        if (length > 0xFFFF) {
+            throw new RuntimeException("Method code is larger than 65535 bytes");
+        }
+
+        return Arrays.copyOf(code, length);
+    }
+
+    public boolean hasFrames() {
+        return !frames.isEmpty();
+    }
+
+    /**
+     * Encodes the recorded frames as the contents of a StackMapTable attribute.
+     *
+     * @param initialLocals locals of the implicit frame at the start of the method
+     */
+    public byte[] getStackMapTable(VerificationType[] initialLocals) {
+        var bytes = new ByteArrayOutputStream();
+        var out = new DataOutputStream(bytes);
+
+        try {
+            out.writeShort(frames.size());
+
+            var previousLocals = trimLocals(initialLocals);
+            int previousOffset = -1;
+
+            for (var entry : frames.entrySet()) {
+                int offsetDelta = entry.getKey() - previousOffset - 1;
+                var frame = entry.getValue();
+
+                boolean sameLocals = frame.locals().equals(previousLocals);
+
+                if (sameLocals && frame.stack().isEmpty() && offsetDelta <= 63) {
+                    // same_frame
+                    out.writeByte(offsetDelta);
+                } else if (sameLocals && frame.stack().size() == 1 && offsetDelta <= 63) {
+                    // same_locals_1_stack_item_frame
+                    out.writeByte(64 + offsetDelta);
+                    writeVerificationType(out, frame.stack().get(0));
+                } else {
+                    // full_frame
+                    out.writeByte(255);
+                    out.writeShort(offsetDelta);
+                    out.writeShort(frame.locals().size());
+                    for (var type : frame.locals()) {
+                        writeVerificationType(out, type);
+                    }
+                    out.writeShort(frame.stack().size());
+                    for (var type : frame.stack()) {
+                        writeVerificationType(out, type);
+                    }
+                }
+
+                previousLocals = frame.locals();
+                previousOffset = entry.getKey();
+            }
+        } catch (IOException e) {
+            throw new RuntimeException("Could not encode stack map frames", e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private void writeVerificationType(DataOutputStream out, VerificationType type) throws IOException {
+        out.writeByte(type.tag());
+        if (type.tag() == TAG_OBJECT) {
+            out.writeShort(pool.addClass(type.className()));
+        }
+    }
+
+    private void updateStack(int stackDelta) {
+        stackSize += stackDelta;
+        if (stackSize < 0) {
+            throw new RuntimeException("Operand stack underflow at offset " + length);
+        }
+
+        maxStack = Math.max(maxStack, stackSize);
+    }
+
+    /**
+     * Sets the stack size at the start of code that is only reached through branches.
+     */
+    public void setStackSize(int stackSize) {
+        this.stackSize = stackSize;
+    }
+
+    private void writeByte(int value) {
+        if (length == code.length) {
+            code = Arrays.copyOf(code, code.length * 2);
+        }
+
+        code[length++] = (byte) value;
+    }
+
+    private void writeShort(int value) {
+        writeByte(value >> 8);
+        writeByte(value);
+    }
+}
@@ -0,0 +1,122 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Constant pool of a class file being generated.
+ * <p>
+ * Each constant is only added once, asking for an equal constant again returns the index of the existing entry.
+ */
+public class ConstantPool {
+
+    private static final int UTF8 = 1;
+    private static final int INTEGER = 3;
+    private static final int CLASS = 7;
+    private static final int STRING = 8;
+    private static final int FIELD_REF = 9;
+    private static final int METHOD_REF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    private final Map<String, Integer> indexes;
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream out;
+    private int nextIndex;
+
+    public ConstantPool() {
+        this.indexes = new HashMap<>();
+        this.bytes = new ByteArrayOutputStream();
+        this.out = new DataOutputStream(bytes);
+        // Index 0 is reserved by the class file format
+        this.nextIndex = 1;
+    }
+
+    public int addUtf8(String value) {
+        return add(UTF8 + ":" + value, () -> out.writeUTF(value));
+    }
+
+    public int addInteger(int value) {
+        return add(INTEGER + ":" + value, () -> out.writeInt(value));
+    }
+
+    /**
+     * @param internalName name of the class in internal form, e.g. "java/lang/Object" or "[I"
+     */
+    public int addClass(String internalName) {
+        int nameIndex = addUtf8(internalName);
+        return add(CLASS + ":" + internalName, () -> out.writeShort(nameIndex));
+    }
+
+    public int addString(String value) {
+        int valueIndex = addUtf8(value);
+        return add(STRING + ":" + value, () -> out.writeShort(valueIndex));
+    }
+
+    public int addFieldRef(String owner, String name, String descriptor) {
+        return addMemberRef(FIELD_REF, owner, name, descriptor);
+    }
+
+    public int addMethodRef(String owner, String name, String descriptor) {
+        return addMemberRef(METHOD_REF, owner, name, descriptor);
+    }
+
+    private int addMemberRef(int tag, String owner, String name, String descriptor) {
+        int classIndex = addClass(owner);
+        int nameAndTypeIndex = addNameAndType(name, descriptor);
+
+        return add(tag + ":" + owner + "." + name + ":" + descriptor, () -> {
+            out.writeShort(classIndex);
+            out.writeShort(nameAndTypeIndex);
+        });
+    }
+
+    private int addNameAndType(String name, String descriptor) {
+        int nameIndex = addUtf8(name);
+        int descriptorIndex = addUtf8(descriptor);
+
+        return add(NAME_AND_TYPE + ":" + name + ":" + descriptor, () -> {
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+    }
+
+    private int add(String key, EntryWriter entryWriter) {
+        var index = indexes.get(key);
+        if (index != null) {
+            return index;
+        }
+
+        // The tag is the prefix of the key
+        int tag = Integer.parseInt(key.substring(0, key.indexOf(':')));
+
+        try {
+            out.writeByte(tag);
+            entryWriter.write();
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write constant pool entry '" + key + "'", e);
+        }
+
+        if (nextIndex > 0xFFFF) {
+            throw new RuntimeException("Constant pool has more than 65535 entries");
+        }
+
+        indexes.put(key, nextIndex);
+        return nextIndex++;
+    }
+
+    /**
+     * Writes the constant_pool_count followed by all the entries.
+     */
+    public void write(DataOutputStream classOut) throws IOException {
+        classOut.writeShort(nextIndex);
+        bytes.writeTo(classOut);
+    }
+
+    @FunctionalInterface
+    private interface EntryWriter {
+        void write() throws IOException;
+    }
+}
@@ -0,0 +1,128 @@
+package pt.up.fe.comp2024.backend;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Jasmin code of a method body, or of a part of it, as a sequence of labels and instructions.
+ * <p>
+ * Every instruction carries its effect on the operand stack, so the maximum stack size is computed by following the
+ * branches of the code instead of reading it line by line.
+ */
+public class JasminCode {
+
+    private static final String NL = "\n";
+    private static final String TAB = "   ";
+
+    private final List<JasminInstruction> lines;
+
+    public JasminCode() {
+        this.lines = new ArrayList<>();
+    }
+
+    public List<JasminInstruction> getLines() {
+        return lines;
+    }
+
+    public JasminCode add(JasminInstruction instruction) {
+        lines.add(instruction);
+        return this;
+    }
+
+    public JasminCode append(JasminCode code) {
+        lines.addAll(code.lines);
+        return this;
+    }
+
+    public JasminCode label(String name) {
+        return add(JasminInstruction.label(name));
+    }
+
+    /**
+     * Computes the largest number of values on the operand stack at any reachable instruction.
+     * <p>
+     * The stack is empty when the method starts, and the JVM requires it to have the same size whenever the same
+     * instruction is reached, so the size found the first time an instruction is reached is the one kept.
+     */
+    public int getMaxStack() {
+        if (lines.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).isLabel()) {
+                labels.put(lines.get(i).argument(), i);
+            }
+        }
+
+        var entrySizes = new int[lines.size()];
+        Arrays.fill(entrySizes, -1);
+        entrySizes[0] = 0;
+
+        var worklist = new ArrayDeque<Integer>();
+        worklist.add(0);
+
+        int maxStack = 0;
+        while (!worklist.isEmpty()) {
+            int index = worklist.poll();
+            var line = lines.get(index);
+
+            // Code the generator does not balance is not rejected here, the JVM verifier will report it
+            int stackSize = Math.max(0, entrySizes[index] - line.pops()) + line.pushes();
+            maxStack = Math.max(maxStack, stackSize);
+
+            if (line.isBranch()) {
+                var target = labels.get(line.argument());
+                if (target == null) {
+                    throw new RuntimeException("Branch to undefined label '" + line.argument() + "'");
+                }
+                visit(target, stackSize, entrySizes, worklist);
+            }
+
+            if (!line.endsBlock() && index + 1 < lines.size()) {
+                visit(index + 1, stackSize, entrySizes, worklist);
+            }
+        }
+
+        return maxStack;
+    }
+
+    private static void visit(int index, int stackSize, int[] entrySizes, ArrayDeque<Integer> worklist) {
+        if (entrySizes[index] == -1) {
+            entrySizes[index] = stackSize;
+            worklist.add(index);
+        }
+    }
+
+    /**
+     * Appends the code with one line per label or instruction, instructions being indented.
+     */
+    public void write(Appendable out) throws IOException {
+        for (var line : lines) {
+            if (!line.isLabel()) {
+                out.append(TAB);
+            }
+            out.append(line.toString()).append(NL);
+        }
+    }
+
+    @Override
+    public String toString() {
+        var code = new StringBuilder();
+
+        try {
+            write(code);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new RuntimeException(e);
+        }
+
+        return code.toString();
+    }
+}
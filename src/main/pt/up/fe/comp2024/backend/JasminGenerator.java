@@ -4,13 +4,13 @@ import org.specs.comp.ollir.*;
 import org.specs.comp.ollir.tree.TreeNode;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
 import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.CompilerConfig;
 import pt.up.fe.specs.util.classmap.FunctionClassMap;
 import pt.up.fe.specs.util.exceptions.NotImplementedException;
-import pt.up.fe.specs.util.utilities.StringLines;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
  * Generates Jasmin code from an OllirResult.
@@ -20,7 +20,6 @@ import java.util.stream.Collectors;
 public class JasminGenerator {
 
     private static final String NL = "\n";
-    private static final String TAB = "   ";
 
     private final OllirResult ollirResult;
 
@@ -30,19 +29,18 @@ public class JasminGenerator {
 
     Method currentMethod;
 
-    private final FunctionClassMap<TreeNode, String> generators;
+    private int labelCounter;
+
+    private final FunctionClassMap<TreeNode, JasminCode> generators;
 
     public JasminGenerator(OllirResult ollirResult) {
         this.ollirResult = ollirResult;
-        ollirResult.getOllirClass().getImports().add("java/lang/Object");
 
         reports = new ArrayList<>();
         code = null;
         currentMethod = null;
 
         this.generators = new FunctionClassMap<>();
-        generators.put(ClassUnit.class, this::generateClassUnit);
-        generators.put(Method.class, this::generateMethod);
         generators.put(AssignInstruction.class, this::generateAssign);
         generators.put(SingleOpInstruction.class, this::generateSingleOp);
         generators.put(LiteralElement.class, this::generateLiteral);
@@ -51,7 +49,6 @@ public class JasminGenerator {
         generators.put(BinaryOpInstruction.class, this::generateBinaryOp);
         generators.put(UnaryOpInstruction.class, this::generateUnaryOpInstruction);
         generators.put(ReturnInstruction.class, this::generateReturn);
-        generators.put(Field.class, this::generateField);
         generators.put(GetFieldInstruction.class, this::generateGetFieldInstruction);
         generators.put(PutFieldInstruction.class, this::generatePutFieldInstruction);
         generators.put(CallInstruction.class, this::generateCall);
@@ -68,16 +65,33 @@ public class JasminGenerator {
 
         // This way, build is idempotent
         if (code == null) {
-            code = generators.apply(ollirResult.getOllirClass());
+            var classCode = new StringBuilder();
+            build(classCode);
+            code = classCode.toString();
         }
 
         return code;
     }
 
+    /**
+     * Appends the Jasmin code of the class to the given output, one method at a time, without building the code of
+     * the whole class in memory.
+     */
+    public void build(Appendable out) {
+        try {
+            if (code != null) {
+                out.append(code);
+                return;
+            }
 
-    private String generateClassUnit(ClassUnit classUnit) {
+            generateClassUnit(ollirResult.getOllirClass(), out);
+        } catch (IOException e) {
+            throw new RuntimeException("Could not write Jasmin code", e);
+        }
+    }
 
-        var code = new StringBuilder();
+
+    private void generateClassUnit(ClassUnit classUnit, Appendable code) throws IOException {
 
         // generate class name
         var className = ollirResult.getOllirClass().getClassName();
@@ -90,7 +104,7 @@ public class JasminGenerator {
         code.append(".super ").append(superName).append(NL);
 
         for (Field field : ollirResult.getOllirClass().getFields()) {
-            code.append(generators.apply(field));
+            code.append(generateField(field));
         }
         code.append(NL);
         // generate a single constructor method
@@ -115,19 +129,17 @@ public class JasminGenerator {
                 continue;
             }
 
-            code.append(generators.apply(method));
+            generateMethod(method, code);
         }
-
-        return code.toString();
     }
 
 
-    private String generateMethod(Method method) {
+    private void generateMethod(Method method, Appendable code) throws IOException {
 
         // set method
         currentMethod = method;
-        var code = new StringBuilder();
-        StringBuilder methodBody = new StringBuilder();
+        labelCounter = 0;
+        var methodBody = new JasminCode();
 
         // calculate modifier
         var modifier = method.getMethodAccessModifier() != AccessModifier.DEFAULT ?
@@ -149,12 +161,10 @@ public class JasminGenerator {
             List<String> label = method.getLabels(inst);
 
             if (label != null) {
-                for (String l : label) methodBody.append(l).append(":").append(NL);
+                for (String l : label) methodBody.label(l);
             }
 
-            String instCode = StringLines.getLines(generators.apply(inst)).stream().collect(Collectors.joining(NL + TAB, TAB, NL));
-
-            methodBody.append(instCode);
+            methodBody.append(generators.apply(inst));
 
             /*
             if (inst instanceof CallInstruction callInstruction && !callInstruction.getReturnType().getTypeOfElement().equals(ElementType.VOID)) {
@@ -163,110 +173,36 @@ public class JasminGenerator {
              */
         }
 
-        var varTable = method.getVarTable();
-        int numOfVars = varTable.size();
+        JasminPeephole.optimize(methodBody, CompilerConfig.getOptimize(ollirResult.getConfig()));
 
-        code.append(".limit stack ").append(getStackLimit(methodBody.toString())).append(NL);
-        code.append(".limit locals ").append(numOfVars + 1).append(NL);
-        code.append(methodBody);
+        code.append(".limit stack ").append(String.valueOf(methodBody.getMaxStack())).append(NL);
+        code.append(".limit locals ").append(String.valueOf(getLocalsLimit(method))).append(NL);
+        methodBody.write(code);
         code.append(".end method\n");
 
         // unset method
         currentMethod = null;
-
-        return code.toString();
     }
 
-    private int getStackLimit(String jasminCode) {
-        int currentStack = 0;
-        int maxStack = 0;
-
-        // Split the input code into individual lines/instructions
-        String[] lines = jasminCode.split("\n");
-
-        for (String line : lines) {
-            String trimmedLine = line.trim();
-            if (trimmedLine.isEmpty()) continue;
-
-            if (trimmedLine.startsWith("aload") || trimmedLine.startsWith("iload") || trimmedLine.startsWith("fload") || trimmedLine.startsWith("dload") ||
-                    trimmedLine.startsWith("ldc") || trimmedLine.startsWith("new") || trimmedLine.startsWith("dup") || trimmedLine.startsWith("iconst") ||
-                    trimmedLine.startsWith("bipush") || trimmedLine.startsWith("sipush")) {
-                currentStack += 1;
-            } else if (trimmedLine.startsWith("istore") || trimmedLine.startsWith("fstore") || trimmedLine.startsWith("dstore") ||
-                    trimmedLine.startsWith("astore") || trimmedLine.startsWith("pop")) {
-                currentStack -= 1;
-            } else if (trimmedLine.startsWith("iadd") || trimmedLine.startsWith("isub") || trimmedLine.startsWith("imul") || trimmedLine.startsWith("idiv") ||
-                    trimmedLine.startsWith("fadd") || trimmedLine.startsWith("fsub") || trimmedLine.startsWith("fmul") || trimmedLine.startsWith("fdiv")) {
-                currentStack -= 1;
-            } else if (trimmedLine.startsWith("invokevirtual") || trimmedLine.startsWith("invokestatic") || trimmedLine.startsWith("invokespecial")) {
-                int numArgs = countMethodArgs(trimmedLine);
-                currentStack -= numArgs;
-                if (!methodReturnsVoid(trimmedLine)) {
-                    currentStack += 1;
-                }
-            } else if (trimmedLine.startsWith("ireturn") || trimmedLine.startsWith("freturn") || trimmedLine.startsWith("dreturn") ||
-                    trimmedLine.startsWith("areturn")) {
-                currentStack -= 1;
-            }
+    private int getLocalsLimit(Method method) {
+        // 'this' and the parameters always have a register, even if they are not used
+        int limit = (method.isStaticMethod() ? 0 : 1) + method.getParams().size();
 
-            if (currentStack > maxStack) {
-                maxStack = currentStack;
+        // Registers may be shared after register allocation, so the highest one is what matters
+        for (var descriptor : method.getVarTable().values()) {
+            if (descriptor.getScope() != VarScope.FIELD) {
+                limit = Math.max(limit, descriptor.getVirtualReg() + 1);
             }
         }
 
-        return maxStack;
-    }
-
-    private int countMethodArgs(String invokeInstruction) {
-        String descriptor = invokeInstruction.substring(invokeInstruction.indexOf("(") + 1, invokeInstruction.indexOf(")"));
-        return (int) descriptor.chars().filter(ch -> ch == 'I' || ch == 'F' || ch == 'D' || ch == 'L').count();
+        return limit;
     }
 
-    private boolean methodReturnsVoid(String invokeInstruction) {
-        return invokeInstruction.contains(")V");
-    }
-
-    private String generateAssign(AssignInstruction assign) {
-        var code = new StringBuilder();
-
-        // Check if this is a simple increment case
-        if (isSimpleIncrement(assign)) {
-            BinaryOpInstruction boInst = (BinaryOpInstruction) assign.getRhs();
-            Operand operand = (Operand) boInst.getOperands().get(0);
-            LiteralElement element = (LiteralElement) boInst.getOperands().get(1);
-
-            Descriptor varName = currentMethod.getVarTable().get(operand.getName());
-
-            // Check if the variable name does not start with "tmp"
-            // This could be a problem if a jmm var starts with tmp -> TODO
-            if (!operand.getName().startsWith("tmp")) {
-                code.append("iinc ").append(varName.getVirtualReg()).append(" ").append(element.getLiteral()).append(NL);
-                return code.toString();
-            }
-        }
-
-        appendGenericAssign(code, assign);
-        return code.toString();
-    }
-
-    private boolean isSimpleIncrement(AssignInstruction assign) {
-        // if 'Y = i + X'
-        // THAT IS:
-        // if right side is a binary operation (boInst)
-        // AND boInst size is 2
-        // AND boInst left side is variable
-        // AND boInst right side is literal
-        if (!(assign.getRhs() instanceof BinaryOpInstruction boInst)) return false;
-        if (!(boInst.getOperands().get(0) instanceof Operand operand)) return false;
-        if (!(assign.getDest() instanceof Operand operand2)) return false;
-        String assignRightVarName = operand.getName();
-        String destVarName = operand2.getName();
-        if (!destVarName.equals(assignRightVarName)) return false; // check if Y and i have the same name
-        if (boInst.getOperands().size() != 2) return false;
-        return boInst.getOperands().get(1) instanceof LiteralElement;
-    }
-
-    private void appendGenericAssign(StringBuilder code, AssignInstruction assign) {
+    /**
+     * Computes the value and stores it. Increments of a variable are turned into 'iinc' by {@link JasminPeephole}.
+     */
+    private JasminCode generateAssign(AssignInstruction assign) {
+        var code = new JasminCode();
         code.append(generators.apply(assign.getRhs()));
 
         // Retrieve and store value
@@ -276,14 +212,14 @@ public class JasminGenerator {
         }
 
         var reg = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
-        String instAppend = reg <= 3 ? "_" : " ";
         String storeInstruction = switch (operand.getType().getTypeOfElement()) {
             case INT32, BOOLEAN -> "istore";
             case ARRAYREF, OBJECTREF, CLASS, STRING -> "astore";
             case THIS, VOID -> throw new IllegalStateException("Unsupported type for storage");
         };
 
-        code.append(storeInstruction).append(instAppend).append(reg).append(NL);
+        code.add(JasminInstruction.store(storeInstruction, reg));
+        return code;
     }
 
 
@@ -305,25 +241,23 @@ public class JasminGenerator {
 
 
 
-    private String generatePutFieldInstruction(PutFieldInstruction putFieldInst) {
-        var code = new StringBuilder();
+    private JasminCode generatePutFieldInstruction(PutFieldInstruction putFieldInst) {
+        var code = new JasminCode();
         Operand field = putFieldInst.getField();
         var reg = field.getParamId();
-        code.append("aload ").append(reg).append(NL);
+        code.add(JasminInstruction.load("aload", reg));
 
         code.append(generators.apply(putFieldInst.getValue()));
 
-        code.append("putfield ");
-        code.append(currentMethod.getOllirClass().getClassName()).append("/").append(field.getName()).append(" ");
-
-        code.append(ollirTypeToJasminType(field.getType())).append(NL);
+        var fieldName = currentMethod.getOllirClass().getClassName() + "/" + field.getName();
+        code.add(JasminInstruction.of("putfield", fieldName + " " + ollirTypeToJasminType(field.getType()), 2, 0));
 
-        return code.toString();
+        return code;
     }
 
 
-    private String generateGetFieldInstruction(GetFieldInstruction getFieldInst) {
-        var code = new StringBuilder();
+    private JasminCode generateGetFieldInstruction(GetFieldInstruction getFieldInst) {
+        var code = new JasminCode();
 
         // Get field details
         var field = getFieldInst.getField();
@@ -333,59 +267,67 @@ public class JasminGenerator {
         var fieldName = field.getName();
         var fieldType = ollirTypeToJasminType(field.getType());
 
-        code.append("aload ").append(reg).append(NL);
-        code.append("getfield ").append(currentMethod.getOllirClass().getClassName())
-                .append("/").append(fieldName).append(" ").append(fieldType).append(NL);
+        code.add(JasminInstruction.load("aload", reg));
+        code.add(JasminInstruction.of("getfield",
+                currentMethod.getOllirClass().getClassName() + "/" + fieldName + " " + fieldType, 1, 1));
 
-
-        return code.toString();
+        return code;
     }
 
-    private String generateSingleOp(SingleOpInstruction singleOp) {
+    private JasminCode generateSingleOp(SingleOpInstruction singleOp) {
         return generators.apply(singleOp.getSingleOperand());
     }
 
-    private String generateLiteral(LiteralElement literal) {
+    /**
+     * Pushes an integer or boolean literal with the shortest instruction for its value.
+     */
+    private JasminCode generateLiteral(LiteralElement literal) {
         String literalString = literal.getLiteral();
-        String instruction = "ldc ";
 
+        int literalValue;
         try {
-            int literalValue = Integer.parseInt(literalString);
-            if (literalValue <= 5) {
-                instruction = "iconst_";
-            } else if (literalValue <= 127) {
-                instruction = "bipush ";
-            } else if (literalValue <= 32767) {
-                instruction = "sipush ";
-            }
+            literalValue = Integer.parseInt(literalString);
         } catch (NumberFormatException e) {
-            System.out.println("The string is not a valid integer");
+            throw new IllegalArgumentException("Expected an integer literal, got '" + literalString + "'", e);
+        }
+
+        JasminInstruction instruction;
+        if (literalValue == -1) {
+            instruction = JasminInstruction.of("iconst_m1", 0, 1);
+        } else if (literalValue >= 0 && literalValue <= 5) {
+            instruction = JasminInstruction.of("iconst_" + literalValue, 0, 1);
+        } else if (literalValue >= Byte.MIN_VALUE && literalValue <= Byte.MAX_VALUE) {
+            instruction = JasminInstruction.of("bipush", literalString, 0, 1);
+        } else if (literalValue >= Short.MIN_VALUE && literalValue <= Short.MAX_VALUE) {
+            instruction = JasminInstruction.of("sipush", literalString, 0, 1);
+        } else {
+            instruction = JasminInstruction.of("ldc", literalString, 0, 1);
         }
 
-        return instruction + literalString + NL;
+        return new JasminCode().add(instruction);
     }
 
-    private String generateOperand(Operand operand) {
+    private JasminCode generateOperand(Operand operand) {
         int value = currentMethod.getVarTable().get(operand.getName()).getVirtualReg();
-        String instAppend = " ";
-        if (value <= 3) instAppend = "_";
-        return switch (operand.getType().getTypeOfElement()) {
-            case BOOLEAN, INT32 -> "iload" + instAppend + value + NL;
-            default -> "aload" + instAppend + value + NL;
+        var loadInstruction = switch (operand.getType().getTypeOfElement()) {
+            case BOOLEAN, INT32 -> "iload";
+            default -> "aload";
         };
+        return new JasminCode().add(JasminInstruction.load(loadInstruction, value));
     }
 
-    private String generateArrayOperand(ArrayOperand arrOp){
-        var code = new StringBuilder();
+    private JasminCode generateArrayOperand(ArrayOperand arrOp){
+        var code = new JasminCode();
         var reg = currentMethod.getVarTable().get(arrOp.getName()).getVirtualReg();
-        code.append("aload").append(reg).append(NL);
-        code.append(generators.apply(arrOp.getIndexOperands().get(0))).append(NL).append("iaload");
-        return code.toString();
+        code.add(JasminInstruction.load("aload", reg));
+        code.append(generators.apply(arrOp.getIndexOperands().get(0)));
+        code.add(JasminInstruction.of("iaload", 2, 1));
+        return code;
     }
 
 
-    private String generateBinaryOp(BinaryOpInstruction binaryOp) {
-        var code = new StringBuilder();
+    private JasminCode generateBinaryOp(BinaryOpInstruction binaryOp) {
+        var code = new JasminCode();
 
         // load values on the left and on the right
         code.append(generators.apply(binaryOp.getLeftOperand()));
@@ -393,54 +335,69 @@ public class JasminGenerator {
 
         // apply operation
         var op = switch (binaryOp.getOperation().getOpType()) {
-            case ADD -> "iadd";
-            case MUL -> "imul";
-            case SUB -> "isub";
-            case DIV -> "idiv";
-            case AND, ANDB -> "iand";
-            case OR, ORB -> "ior";
-            case EQ, NEQ, LTE, GTE -> "icmp";
-            case NOT, NOTB -> "ineg";
-            default -> throw new NotImplementedException(binaryOp.getOperation().getOpType());
+            case ADD -> JasminInstruction.of("iadd", 2, 1);
+            case MUL -> JasminInstruction.of("imul", 2, 1);
+            case SUB -> JasminInstruction.of("isub", 2, 1);
+            case DIV -> JasminInstruction.of("idiv", 2, 1);
+            case AND, ANDB -> JasminInstruction.of("iand", 2, 1);
+            case OR, ORB -> JasminInstruction.of("ior", 2, 1);
+            case NOT, NOTB -> JasminInstruction.of("ineg", 1, 1);
+            default -> null;
         };
 
-        code.append(op).append(NL);
+        if (op != null) {
+            code.add(op);
+            return code;
+        }
 
-        return code.toString();
+        // Comparisons have no instruction that produces a boolean, use a branch to push 0 or 1
+        var opType = binaryOp.getOperation().getOpType();
+        var trueLabel = newLabel("true");
+        var endLabel = newLabel("end");
+
+        code.add(JasminInstruction.branch("if_icmp" + getCompareSuffix(opType), trueLabel, 2));
+        code.add(JasminInstruction.of("iconst_0", 0, 1));
+        code.add(JasminInstruction.branch("goto", endLabel, 0));
+        code.label(trueLabel);
+        code.add(JasminInstruction.of("iconst_1", 0, 1));
+        code.label(endLabel);
+
+        return code;
     }
 
-    private String generateUnaryOpInstruction(UnaryOpInstruction unaryOp){
-        var code = new StringBuilder();
-        code.append("ldc 1").append(NL);
+    private JasminCode generateUnaryOpInstruction(UnaryOpInstruction unaryOp){
+        var code = new JasminCode();
         code.append(generators.apply(unaryOp.getOperand()));
 
-        code.append("ixor").append(NL);
+        // Negated after the operand, so the peephole pass can fold it into a following branch
+        code.add(JasminInstruction.of("iconst_1", 0, 1));
+        code.add(JasminInstruction.of("ixor", 2, 1));
 
-        return code.toString();
+        return code;
 
     }
 
-    private String generateReturn(ReturnInstruction returnInst) {
-        var code = new StringBuilder();
+    private JasminCode generateReturn(ReturnInstruction returnInst) {
+        var code = new JasminCode();
 
         // If the return is void, then .getOperand() is null, not sure how to handle this
         if (returnInst.hasReturnValue()){
             code.append(generators.apply(returnInst.getOperand()));
         }
 
-        String returnCode = switch (returnInst.getReturnType().getTypeOfElement()){
-            case INT32, BOOLEAN -> "ireturn";
-            case ARRAYREF, OBJECTREF, CLASS, THIS, STRING -> "areturn";
-            case VOID -> "return";
+        var returnCode = switch (returnInst.getReturnType().getTypeOfElement()){
+            case INT32, BOOLEAN -> JasminInstruction.of("ireturn", 1, 0);
+            case ARRAYREF, OBJECTREF, CLASS, THIS, STRING -> JasminInstruction.of("areturn", 1, 0);
+            case VOID -> JasminInstruction.of("return", 0, 0);
         };
 
-        code.append(returnCode).append(NL);
-        return code.toString();
+        code.add(returnCode);
+        return code;
     }
 
-    private String generateCall(CallInstruction callInstruction) {
-        StringBuilder code = new StringBuilder();
-        String invocationCode = "";
+    private JasminCode generateCall(CallInstruction callInstruction) {
+        var code = new JasminCode();
+        JasminInstruction invocationCode = null;
 
         Operand caller = (Operand) callInstruction.getCaller();
         String callerName = caller.getName();
@@ -495,26 +452,22 @@ public class JasminGenerator {
                 } else {
                     code.append("new ").append(callerType).append(NL).append("dup").append(NL);
                 }*/
-                code.append("new ").append(callerType).append(NL).append("dup").append(NL);
+                code.add(JasminInstruction.of("new", callerType, 0, 1)).add(JasminInstruction.of("dup", 1, 2));
                 break;
         }
 
         for (Element argument : callInstruction.getArguments()) {
             code.append(generators.apply(argument));
         }
-        code.append(invocationCode).append(NL);
+        if (invocationCode != null) {
+            code.add(invocationCode);
+        }
 
-        return code.toString();
+        return code;
     }
 
-    private String getCall(String invocationType, String className, String methodName, List<String> argumentsType, String returnType) {
-        StringBuilder code = new StringBuilder();
-        code.append(invocationType).append(" ").append(className).append(".").append(methodName).append("(");
-        for (String argumentType : argumentsType) {
-            code.append(argumentType);
-        }
-        code.append(")").append(returnType);
-        return code.toString();
+    private JasminInstruction getCall(String invocationType, String className, String methodName, List<String> argumentsType, String returnType) {
+        return JasminInstruction.invoke(invocationType, className, methodName, argumentsType, returnType);
     }
     private String ollirTypeToJasminType(Type type) {
         // This method should map OLLIR types to Jasmin type descriptors
@@ -536,48 +489,118 @@ public class JasminGenerator {
             }
         }
 
+        // Resolved here instead of adding an import, the OLLIR class may be shared with other generators
+        if (shortName.equals("Object")) {
+            return "java/lang/Object";
+        }
+
         return shortName;
     }
 
     // TODO
-    private String generateSingleOpCondInstruction(SingleOpCondInstruction instruction) {
-        StringBuilder code = new StringBuilder();
+    private JasminCode generateSingleOpCondInstruction(SingleOpCondInstruction instruction) {
+        var code = new JasminCode();
+        var operand = instruction.getCondition().getSingleOperand();
+
+        // A constant condition either always jumps or never does
+        if (operand instanceof LiteralElement literal) {
+            if (!literal.getLiteral().equals("0")) {
+                code.add(JasminInstruction.branch("goto", instruction.getLabel(), 0));
+            }
+            return code;
+        }
 
-        String condCode = StringLines.getLines(generators.apply(instruction.getCondition())).stream().collect(Collectors.joining(NL, TAB, NL));
-        code.append(condCode);
-        code.append("ifne ").append(instruction.getLabel());
+        code.append(generators.apply(operand));
+        code.add(JasminInstruction.branch("ifne", instruction.getLabel(), 1));
 
-        return code.toString();
+        return code;
     }
 
     // TODO
-    private String generateGoToInstruction(GotoInstruction instruction) {
-        return "goto " + instruction.getLabel() + NL;
+    private JasminCode generateGoToInstruction(GotoInstruction instruction) {
+        return new JasminCode().add(JasminInstruction.branch("goto", instruction.getLabel(), 0));
     }
 
-    private String generateOpCondInstruction(OpCondInstruction instruction) {
-        StringBuilder code = new StringBuilder();
+    private JasminCode generateOpCondInstruction(OpCondInstruction instruction) {
+        var code = new JasminCode();
+        var condition = instruction.getCondition();
+        var label = instruction.getLabel();
+        OperationType opType = condition.getOperation().getOpType();
+
+        if (condition instanceof BinaryOpInstruction binaryOp && isComparison(opType)) {
+            var left = binaryOp.getLeftOperand();
+            var right = binaryOp.getRightOperand();
+
+            // Comparisons with zero have their own instructions
+            if (isZero(right)) {
+                code.append(generators.apply(left));
+                code.add(JasminInstruction.branch("if" + getCompareSuffix(opType), label, 1));
+            } else if (isZero(left)) {
+                code.append(generators.apply(right));
+                code.add(JasminInstruction.branch("if" + getCompareSuffix(swapComparison(opType)), label, 1));
+            } else {
+                code.append(generators.apply(left));
+                code.append(generators.apply(right));
+                code.add(JasminInstruction.branch("if_icmp" + getCompareSuffix(opType), label, 2));
+            }
+
+            return code;
+        }
+
+        if (condition instanceof UnaryOpInstruction unaryOp && (opType == OperationType.NOTB || opType == OperationType.NOT)) {
+            code.append(generators.apply(unaryOp.getOperand()));
+            code.add(JasminInstruction.branch("ifeq", label, 1));
+            return code;
+        }
 
-        // Generate code for both sides of the operation
-        code.append(generators.apply(instruction.getOperands().get(0)));
-        code.append(generators.apply(instruction.getOperands().get(1)));
+        // Any other condition is evaluated to a boolean
+        code.append(generators.apply(condition));
+        code.add(JasminInstruction.branch("ifne", label, 1));
 
-        OperationType opType = instruction.getCondition().getOperation().getOpType();
-        System.out.println("opType " + opType);
+        return code;
+    }
 
-        code.append("isub").append(NL);
+    private boolean isComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH, GTH, EQ, NEQ, LTE, GTE -> true;
+            default -> false;
+        };
+    }
 
-        String jumpInstruction = switch (opType) {
-            case LTH -> "iflt ";
-            case GTH -> "ifgt ";
-            case EQ -> "ifeq ";
-            case NEQ -> "ifne ";
-            default -> throw new UnsupportedOperationException("Operation type " + opType + " not supported.");
+    /**
+     * Suffix of the branch instructions for the comparison, e.g. 'lt' for 'iflt' and 'if_icmplt'.
+     */
+    private String getCompareSuffix(OperationType opType) {
+        return switch (opType) {
+            case LTH -> "lt";
+            case GTH -> "gt";
+            case EQ -> "eq";
+            case NEQ -> "ne";
+            case LTE -> "le";
+            case GTE -> "ge";
+            default -> throw new NotImplementedException(opType);
         };
+    }
 
+    /**
+     * Comparison with the same result when its operands are swapped.
+     */
+    private OperationType swapComparison(OperationType opType) {
+        return switch (opType) {
+            case LTH -> OperationType.GTH;
+            case GTH -> OperationType.LTH;
+            case LTE -> OperationType.GTE;
+            case GTE -> OperationType.LTE;
+            default -> opType;
+        };
+    }
 
-        code.append(jumpInstruction).append(instruction.getLabel()).append(NL);
+    private boolean isZero(Element element) {
+        return element instanceof LiteralElement literal && literal.getLiteral().equals("0");
+    }
 
-        return code.toString();
+    private String newLabel(String prefix) {
+        // '$' cannot appear in OLLIR labels, so these never clash with them
+        return "$" + prefix + labelCounter++;
     }
 }
\ No newline at end of file
@@ -0,0 +1,105 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A line of Jasmin code, either an instruction or a label, together with its effect on the operand stack.
+ *
+ * @param opcode   mnemonic of the instruction, or {@link #LABEL} for labels
+ * @param argument text after the mnemonic, the name of a label or null if there is none
+ * @param pops     number of values the instruction takes from the operand stack
+ * @param pushes   number of values the instruction leaves on the operand stack
+ */
+public record JasminInstruction(String opcode, String argument, int pops, int pushes) {
+
+    public static final String LABEL = "label";
+
+    private static final Set<String> LOCALS = Set.of("iload", "aload", "istore", "astore");
+
+    private static final Set<String> BRANCHES = Set.of("goto", "ifeq", "ifne", "iflt", "ifge", "ifgt", "ifle",
+            "if_icmpeq", "if_icmpne", "if_icmplt", "if_icmpge", "if_icmpgt", "if_icmple");
+
+    private static final Set<String> RETURNS = Set.of("return", "ireturn", "areturn");
+
+    public static JasminInstruction of(String opcode, int pops, int pushes) {
+        return new JasminInstruction(opcode, null, pops, pushes);
+    }
+
+    public static JasminInstruction of(String opcode, String argument, int pops, int pushes) {
+        return new JasminInstruction(opcode, argument, pops, pushes);
+    }
+
+    public static JasminInstruction label(String name) {
+        return new JasminInstruction(LABEL, name, 0, 0);
+    }
+
+    /**
+     * Loads a local variable.
+     *
+     * @param opcode iload or aload
+     */
+    public static JasminInstruction load(String opcode, int register) {
+        return new JasminInstruction(opcode, String.valueOf(register), 0, 1);
+    }
+
+    /**
+     * Stores the value on top of the stack in a local variable.
+     *
+     * @param opcode istore or astore
+     */
+    public static JasminInstruction store(String opcode, int register) {
+        return new JasminInstruction(opcode, String.valueOf(register), 1, 0);
+    }
+
+    /**
+     * A conditional branch, or a goto, which takes the given number of values from the stack.
+     */
+    public static JasminInstruction branch(String opcode, String label, int pops) {
+        return new JasminInstruction(opcode, label, pops, 0);
+    }
+
+    /**
+     * Calls a method, taking its arguments and, unless it is static, the object it is called on.
+     */
+    public static JasminInstruction invoke(String opcode, String className, String methodName,
+                                           List<String> argumentTypes, String returnType) {
+        var argument = className + "." + methodName + "(" + String.join("", argumentTypes) + ")" + returnType;
+        int pops = argumentTypes.size() + (opcode.equals("invokestatic") ? 0 : 1);
+
+        return new JasminInstruction(opcode, argument, pops, returnType.equals("V") ? 0 : 1);
+    }
+
+    public boolean isLabel() {
+        return opcode.equals(LABEL);
+    }
+
+    public boolean isBranch() {
+        return BRANCHES.contains(opcode);
+    }
+
+    /**
+     * Checks if execution never continues to the next line, as after a goto or a return.
+     */
+    public boolean endsBlock() {
+        return opcode.equals("goto") || RETURNS.contains(opcode);
+    }
+
+    @Override
+    public String toString() {
+        if (isLabel()) {
+            return argument + ":";
+        }
+
+        if (argument == null) {
+            return opcode;
+        }
+
+        // Registers 0 to 3 have their own single byte instructions
+        if (LOCALS.contains(opcode) && Integer.parseInt(argument) <= 3) {
+            return opcode + "_" + argument;
+        }
+
+        return opcode + " " + argument;
+    }
+}
@@ -0,0 +1,329 @@
+package pt.up.fe.comp2024.backend;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites short sequences of Jasmin instructions into cheaper equivalent ones.
+ * <p>
+ * Patterns only match instructions that are next to each other, with no label in between, so no other path of
+ * the method can observe the replaced instructions. Rewriting is repeated until no pattern matches, since removing
+ * instructions may bring new ones together.
+ * <p>
+ * Variables that are only stored to be read right away are removed when optimizing, otherwise every variable keeps
+ * its store.
+ */
+public class JasminPeephole {
+
+    private static final Map<String, String> INVERSE_BRANCHES = Map.ofEntries(
+            Map.entry("ifeq", "ifne"), Map.entry("ifne", "ifeq"),
+            Map.entry("iflt", "ifge"), Map.entry("ifge", "iflt"),
+            Map.entry("ifgt", "ifle"), Map.entry("ifle", "ifgt"),
+            Map.entry("if_icmpeq", "if_icmpne"), Map.entry("if_icmpne", "if_icmpeq"),
+            Map.entry("if_icmplt", "if_icmpge"), Map.entry("if_icmpge", "if_icmplt"),
+            Map.entry("if_icmpgt", "if_icmple"), Map.entry("if_icmple", "if_icmpgt"));
+
+    private final List<JasminInstruction> lines;
+
+    /**
+     * Number of instructions that read each register.
+     */
+    private final Map<Integer, Integer> registerReads;
+
+    private final boolean removeVariables;
+
+    private JasminPeephole(JasminCode code, boolean removeVariables) {
+        this.lines = code.getLines();
+        this.registerReads = new HashMap<>();
+        this.removeVariables = removeVariables;
+    }
+
+    /**
+     * @param removeVariables if variables read only once, right after being stored, may be removed
+     */
+    public static void optimize(JasminCode code, boolean removeVariables) {
+        new JasminPeephole(code, removeVariables).run();
+    }
+
+    private void run() {
+        countRegisterReads();
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = 0; i < lines.size(); i++) {
+                changed |= removeGotoToNextLabel(i)
+                        || invertBranchOverGoto(i)
+                        || useIncrement(i)
+                        || removeStoreLoad(i)
+                        || removeNeutralOperation(i)
+                        || removeNegation(i);
+            }
+        }
+    }
+
+    private void countRegisterReads() {
+        for (var line : lines) {
+            var opcode = line.opcode();
+            if (opcode.equals("iload") || opcode.equals("aload")) {
+                registerReads.merge(getRegister(line), 1, Integer::sum);
+            } else if (opcode.equals("iinc")) {
+                // Incrementing reads the register as well
+                registerReads.merge(Integer.parseInt(line.argument().split(" ")[0]), 1, Integer::sum);
+            }
+        }
+    }
+
+    /**
+     * 'goto L' followed by 'L:', possibly among other labels, is removed.
+     */
+    private boolean removeGotoToNextLabel(int index) {
+        var line = lines.get(index);
+        if (!line.opcode().equals("goto")) {
+            return false;
+        }
+
+        for (int next = index + 1; next < lines.size() && lines.get(next).isLabel(); next++) {
+            if (lines.get(next).argument().equals(line.argument())) {
+                lines.remove(index);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 'if L1; goto L2; L1:' becomes 'if!cond L2; L1:', so the code that runs when the condition holds falls through.
+     */
+    private boolean invertBranchOverGoto(int index) {
+        if (index + 2 >= lines.size()) {
+            return false;
+        }
+
+        var branch = lines.get(index);
+        var jump = lines.get(index + 1);
+        var inverted = INVERSE_BRANCHES.get(branch.opcode());
+        if (inverted == null || !jump.opcode().equals("goto")) {
+            return false;
+        }
+
+        for (int next = index + 2; next < lines.size() && lines.get(next).isLabel(); next++) {
+            if (lines.get(next).argument().equals(branch.argument())) {
+                lines.set(index, JasminInstruction.branch(inverted, jump.argument(), branch.pops()));
+                lines.remove(index + 1);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * 'store r; load r' is removed when nothing else reads the register and variables may be removed, and becomes
+     * 'dup; store r' otherwise.
+     * <p>
+     * A load that starts an increment is left for {@link #useIncrement(int)}, which saves more.
+     */
+    private boolean removeStoreLoad(int index) {
+        if (index + 1 >= lines.size()) {
+            return false;
+        }
+
+        var store = lines.get(index);
+        var load = lines.get(index + 1);
+
+        boolean sameKind = store.opcode().equals("istore") && load.opcode().equals("iload")
+                || store.opcode().equals("astore") && load.opcode().equals("aload");
+        if (!sameKind || !store.argument().equals(load.argument()) || getIncrementLength(index + 1) > 0) {
+            return false;
+        }
+
+        int register = getRegister(store);
+        if (removeVariables && registerReads.get(register) == 1) {
+            registerReads.remove(register);
+            lines.subList(index, index + 2).clear();
+        } else {
+            registerReads.merge(register, -1, Integer::sum);
+            lines.set(index, JasminInstruction.of("dup", 1, 2));
+            lines.set(index + 1, store);
+        }
+
+        return true;
+    }
+
+    /**
+     * Adding or subtracting 0 is removed.
+     */
+    private boolean removeNeutralOperation(int index) {
+        if (index + 1 >= lines.size() || !isConstant(lines.get(index), 0)) {
+            return false;
+        }
+
+        var opcode = lines.get(index + 1).opcode();
+        if (!opcode.equals("iadd") && !opcode.equals("isub")) {
+            return false;
+        }
+
+        lines.subList(index, index + 2).clear();
+        return true;
+    }
+
+    /**
+     * 'iload r; k; iadd; istore r' becomes 'iinc r k' when k fits in a byte, as does 'iload r; k; isub; istore r' with
+     * -k.
+     * <p>
+     * 'iload r; k; iadd; istore t; iload t; istore r', where the sum goes through a temporary, becomes
+     * 'iinc r k; iload r; istore t', or only 'iinc r k' when nothing else reads t and variables may be removed.
+     */
+    private boolean useIncrement(int index) {
+        int length = getIncrementLength(index);
+        if (length == 0) {
+            return false;
+        }
+
+        var load = lines.get(index);
+        var increment = JasminInstruction.of("iinc", load.argument() + " " + getIncrement(index), 0, 0);
+
+        // The load of r is replaced by the increment, so r is read as many times as before
+        if (length == 4) {
+            lines.subList(index, index + 4).clear();
+            lines.add(index, increment);
+            return true;
+        }
+
+        var temporaryStore = lines.get(index + 3);
+        int temporary = getRegister(temporaryStore);
+        lines.subList(index, index + 6).clear();
+
+        if (removeVariables && registerReads.get(temporary) == 1) {
+            registerReads.remove(temporary);
+            lines.add(index, increment);
+        } else {
+            // t is no longer read, and r is read once more to store it in t
+            registerReads.merge(temporary, -1, Integer::sum);
+            registerReads.merge(getRegister(load), 1, Integer::sum);
+            lines.addAll(index, List.of(increment, load, temporaryStore));
+        }
+
+        return true;
+    }
+
+    /**
+     * Number of instructions of the increment that starts at the index, in either form of
+     * {@link #useIncrement(int)}, or 0 if none starts there.
+     */
+    private int getIncrementLength(int index) {
+        if (index + 3 >= lines.size()) {
+            return 0;
+        }
+
+        var load = lines.get(index);
+        if (!load.opcode().equals("iload")) {
+            return 0;
+        }
+
+        var increment = getIncrement(index);
+        if (increment == null || increment < Byte.MIN_VALUE || increment > Byte.MAX_VALUE) {
+            return 0;
+        }
+
+        var store = lines.get(index + 3);
+        if (!store.opcode().equals("istore")) {
+            return 0;
+        }
+
+        if (store.argument().equals(load.argument())) {
+            return 4;
+        }
+
+        if (index + 5 < lines.size()
+                && lines.get(index + 4).opcode().equals("iload")
+                && lines.get(index + 4).argument().equals(store.argument())
+                && lines.get(index + 5).opcode().equals("istore")
+                && lines.get(index + 5).argument().equals(load.argument())) {
+            return 6;
+        }
+
+        return 0;
+    }
+
+    /**
+     * Amount added by the constant and the 'iadd' or 'isub' after the instruction at the index, or null if they are
+     * not there.
+     */
+    private Integer getIncrement(int index) {
+        var constant = getConstant(lines.get(index + 1));
+        if (constant == null) {
+            return null;
+        }
+
+        return switch (lines.get(index + 2).opcode()) {
+            case "iadd" -> constant;
+            case "isub" -> -constant;
+            default -> null;
+        };
+    }
+
+    /**
+     * A boolean negated with '1; ixor' twice is left unchanged, and a negation before a branch on zero is removed by
+     * inverting the branch.
+     */
+    private boolean removeNegation(int index) {
+        if (index + 2 >= lines.size() || !isNegation(index)) {
+            return false;
+        }
+
+        var next = lines.get(index + 2);
+        if (index + 3 < lines.size() && isNegation(index + 2)) {
+            lines.subList(index, index + 4).clear();
+            return true;
+        }
+
+        // Only a test against zero sees the 0 or 1 of a boolean as false or true
+        if (!next.opcode().equals("ifeq") && !next.opcode().equals("ifne")) {
+            return false;
+        }
+        var inverted = INVERSE_BRANCHES.get(next.opcode());
+
+        lines.subList(index, index + 3).clear();
+        lines.add(index, JasminInstruction.branch(inverted, next.argument(), 1));
+        return true;
+    }
+
+    private boolean isNegation(int index) {
+        return isConstant(lines.get(index), 1) && lines.get(index + 1).opcode().equals("ixor");
+    }
+
+    private static boolean isConstant(JasminInstruction line, int value) {
+        var constant = getConstant(line);
+        return constant != null && constant == value;
+    }
+
+    /**
+     * Integer pushed by the instruction, or null if it does not push an integer constant.
+     */
+    private static Integer getConstant(JasminInstruction line) {
+        var opcode = line.opcode();
+
+        try {
+            if (opcode.startsWith("iconst_")) {
+                return opcode.equals("iconst_m1") ? -1 : Integer.parseInt(opcode.substring("iconst_".length()));
+            }
+
+            if (opcode.equals("ldc") || opcode.equals("bipush") || opcode.equals("sipush")) {
+                return Integer.parseInt(line.argument());
+            }
+        } catch (NumberFormatException e) {
+            // Strings and other constants that are not integers
+        }
+
+        return null;
+    }
+
+    private static int getRegister(JasminInstruction line) {
+        return Integer.parseInt(line.argument());
+    }
+}
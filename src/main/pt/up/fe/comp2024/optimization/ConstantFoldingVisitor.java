@@ -0,0 +1,186 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp2024.ast.Kind;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Folds expressions whose operands are literals into a single literal.
+ * <p>
+ * Each visit returns the node that takes the place of the visited node, which is the visited node itself when it
+ * cannot be folded. Integer results are only folded when they are not negative, since the language has no negative
+ * literals.
+ */
+public class ConstantFoldingVisitor extends AJmmVisitor<Void, JmmNode> {
+
+    private static final List<String> POSITION_ATTRIBUTES = List.of("lineStart", "colStart", "lineEnd", "colEnd");
+
+    @Override
+    protected void buildVisitor() {
+        addVisit(BINARY_EXPR, this::visitBinaryExpr);
+        addVisit(RELATIONAL_EXPRESSION, this::visitRelationalExpr);
+        addVisit(LOGICAL_EXPRESSION, this::visitLogicalExpr);
+        addVisit(NOT_EXPRESSION, this::visitNotExpr);
+        addVisit(PARENTHESES_EXPRESSION, this::visitParenthesesExpr);
+
+        setDefaultVisit(this::visitChildren);
+    }
+
+    public static boolean isLiteral(JmmNode node) {
+        return INTEGER_LITERAL.check(node) || BOOLEAN_VALUE.check(node);
+    }
+
+    /**
+     * Checks if two literals have the same kind and value.
+     */
+    public static boolean sameLiteral(JmmNode literal, JmmNode other) {
+        return literal.getKind().equals(other.getKind()) && literal.get("value").equals(other.get("value"));
+    }
+
+    private JmmNode visitChildren(JmmNode node, Void unused) {
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            visit(node.getChild(i));
+        }
+
+        return node;
+    }
+
+    private JmmNode visitBinaryExpr(JmmNode node, Void unused) {
+        visitChildren(node, unused);
+
+        var lhs = getIntValue(node.getChild(0));
+        var rhs = getIntValue(node.getChild(1));
+        if (lhs == null || rhs == null) {
+            return node;
+        }
+
+        int result;
+        switch (node.get("op")) {
+            case "+" -> result = lhs + rhs;
+            case "-" -> result = lhs - rhs;
+            case "*" -> result = lhs * rhs;
+            case "/" -> {
+                // Division by zero is left for the program to throw at runtime
+                if (rhs == 0) {
+                    return node;
+                }
+                result = lhs / rhs;
+            }
+            default -> {
+                return node;
+            }
+        }
+
+        if (result < 0) {
+            return node;
+        }
+
+        return replace(node, newLiteral(INTEGER_LITERAL, String.valueOf(result), node));
+    }
+
+    private JmmNode visitRelationalExpr(JmmNode node, Void unused) {
+        visitChildren(node, unused);
+
+        var lhs = getIntValue(node.getChild(0));
+        var rhs = getIntValue(node.getChild(1));
+        if (lhs == null || rhs == null || !node.get("op").equals("<")) {
+            return node;
+        }
+
+        return replace(node, newLiteral(BOOLEAN_VALUE, String.valueOf(lhs < rhs), node));
+    }
+
+    private JmmNode visitLogicalExpr(JmmNode node, Void unused) {
+        visitChildren(node, unused);
+
+        var lhs = node.getChild(0);
+        var rhs = node.getChild(1);
+
+        // The right operand is only evaluated when the left one is true
+        var lhsValue = getBooleanValue(lhs);
+        if (lhsValue != null) {
+            return replace(node, lhsValue ? rhs : lhs);
+        }
+
+        // 'x && true' is 'x', the left operand is evaluated either way
+        if (Boolean.TRUE.equals(getBooleanValue(rhs))) {
+            return replace(node, lhs);
+        }
+
+        return node;
+    }
+
+    private JmmNode visitNotExpr(JmmNode node, Void unused) {
+        visitChildren(node, unused);
+
+        var value = getBooleanValue(node.getChild(0));
+        if (value == null) {
+            return node;
+        }
+
+        return replace(node, newLiteral(BOOLEAN_VALUE, String.valueOf(!value), node));
+    }
+
+    private JmmNode visitParenthesesExpr(JmmNode node, Void unused) {
+        visitChildren(node, unused);
+
+        var child = node.getChild(0);
+        return isLiteral(child) ? replace(node, child) : node;
+    }
+
+    private static Integer getIntValue(JmmNode node) {
+        if (!INTEGER_LITERAL.check(node)) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(node.get("value"));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Boolean getBooleanValue(JmmNode node) {
+        return BOOLEAN_VALUE.check(node) ? Boolean.parseBoolean(node.get("value")) : null;
+    }
+
+    /**
+     * Puts the given node, which may be a descendant of the old one, in the place of the old node.
+     */
+    private static JmmNode replace(JmmNode oldNode, JmmNode newNode) {
+        if (newNode.getParent() != null) {
+            newNode.detach();
+        }
+
+        oldNode.replace(newNode);
+        return newNode;
+    }
+
+    /**
+     * Creates a literal with the position and the hierarchy of the expression it replaces.
+     */
+    private static JmmNode newLiteral(Kind kind, String value, JmmNode replaced) {
+        var literal = new JmmNodeImpl(kind.getNodeName());
+
+        List<String> hierarchy = new ArrayList<>(replaced.getHierarchy());
+        if (hierarchy.isEmpty()) {
+            hierarchy.add(kind.getNodeName());
+        } else {
+            hierarchy.set(0, kind.getNodeName());
+        }
+        literal.setHierarchy(hierarchy);
+
+        for (var attribute : POSITION_ATTRIBUTES) {
+            replaced.getOptional(attribute).ifPresent(position -> literal.put(attribute, position));
+        }
+        literal.put("value", value);
+
+        return literal;
+    }
+}
@@ -0,0 +1,202 @@
+package pt.up.fe.comp2024.optimization;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Replaces the uses of local variables that hold a known constant with that constant, and folds the expressions
+ * that become constant.
+ * <p>
+ * Statements are visited in execution order, with the constants known at each point. After an if, only the
+ * constants known at the end of every branch are kept. Variables assigned inside a loop are not constant in it,
+ * nor after it. Fields are never propagated, since calls can change them.
+ */
+public class ConstantPropagationVisitor extends AJmmVisitor<Map<String, JmmNode>, Void> {
+
+    private final SymbolTable table;
+
+    private final ConstantFoldingVisitor folder;
+
+    private Set<String> locals;
+
+    public ConstantPropagationVisitor(SymbolTable table) {
+        this.table = table;
+        this.folder = new ConstantFoldingVisitor();
+        this.locals = Set.of();
+    }
+
+    @Override
+    protected void buildVisitor() {
+        addVisit(METHOD_DECL, this::visitMethodDecl);
+        addVisit(MAIN_METHOD_DECL, this::visitMethodDecl);
+        addVisit(BLOCK_STMT, this::visitBlockStmt);
+        addVisit(IF_STMT, this::visitIfStmt);
+        addVisit(WHILE_STMT, this::visitWhileStmt);
+        addVisit(ASSIGN_STMT, this::visitAssignStmt);
+        addVisit(RETURN_STMT, this::visitExprStmt);
+        addVisit(EXPRESSION_STMT, this::visitExprStmt);
+
+        setDefaultVisit(this::defaultVisit);
+    }
+
+    private Void visitMethodDecl(JmmNode node, Map<String, JmmNode> constants) {
+        var methodName = node.get("name");
+
+        locals = new HashSet<>();
+        table.getLocalVariables(methodName).stream().map(Symbol::getName).forEach(locals::add);
+        table.getParameters(methodName).stream().map(Symbol::getName).forEach(locals::add);
+
+        // Nothing is known about the parameters when the method starts
+        var methodConstants = new HashMap<String, JmmNode>();
+        for (var child : node.getChildren()) {
+            visit(child, methodConstants);
+        }
+
+        return null;
+    }
+
+    private Void visitBlockStmt(JmmNode node, Map<String, JmmNode> constants) {
+        for (var child : node.getChildren()) {
+            visit(child, constants);
+        }
+
+        return null;
+    }
+
+    private Void visitIfStmt(JmmNode node, Map<String, JmmNode> constants) {
+        // Conditions and statements alternate, and the last statement is the else
+        List<Map<String, JmmNode>> branches = new ArrayList<>();
+        int lastChild = node.getNumChildren() - 1;
+
+        for (int i = 0; i < lastChild; i += 2) {
+            propagate(node.getChild(i), constants);
+
+            var branch = new HashMap<>(constants);
+            visit(node.getChild(i + 1), branch);
+            branches.add(branch);
+        }
+
+        var elseBranch = new HashMap<>(constants);
+        visit(node.getChild(lastChild), elseBranch);
+        branches.add(elseBranch);
+
+        constants.clear();
+        constants.putAll(meet(branches));
+
+        return null;
+    }
+
+    private Void visitWhileStmt(JmmNode node, Map<String, JmmNode> constants) {
+        // Whatever the loop assigns may hold a different value on each iteration
+        constants.keySet().removeAll(getAssignedVariables(node));
+
+        propagate(node.getChild(0), constants);
+        visit(node.getChild(1), new HashMap<>(constants));
+
+        return null;
+    }
+
+    private Void visitAssignStmt(JmmNode node, Map<String, JmmNode> constants) {
+        var lhs = node.getChild(0);
+        var rhs = propagate(node.getChild(1), constants);
+
+        // Only the index of an array access is read
+        if (ARRAY_ACCESS.check(lhs)) {
+            propagate(lhs.getChild(1), constants);
+            return null;
+        }
+
+        if (!VAR_REF_EXPR.check(lhs) || !locals.contains(lhs.get("name"))) {
+            return null;
+        }
+
+        if (ConstantFoldingVisitor.isLiteral(rhs)) {
+            constants.put(lhs.get("name"), rhs);
+        } else {
+            constants.remove(lhs.get("name"));
+        }
+
+        return null;
+    }
+
+    private Void visitExprStmt(JmmNode node, Map<String, JmmNode> constants) {
+        for (int i = 0; i < node.getNumChildren(); i++) {
+            propagate(node.getChild(i), constants);
+        }
+
+        return null;
+    }
+
+    private Void defaultVisit(JmmNode node, Map<String, JmmNode> constants) {
+        for (var child : node.getChildren()) {
+            visit(child, constants);
+        }
+
+        return null;
+    }
+
+    /**
+     * Replaces the constant variables of the expression and folds it, returning the node now in its place.
+     */
+    private JmmNode propagate(JmmNode expr, Map<String, JmmNode> constants) {
+        return folder.visit(replaceConstants(expr, constants));
+    }
+
+    private JmmNode replaceConstants(JmmNode expr, Map<String, JmmNode> constants) {
+        if (VAR_REF_EXPR.check(expr)) {
+            var constant = constants.get(expr.get("name"));
+            if (constant == null) {
+                return expr;
+            }
+
+            var literal = constant.copy();
+            expr.replace(literal);
+            return literal;
+        }
+
+        for (int i = 0; i < expr.getNumChildren(); i++) {
+            replaceConstants(expr.getChild(i), constants);
+        }
+
+        return expr;
+    }
+
+    private static Set<String> getAssignedVariables(JmmNode loop) {
+        Set<String> assigned = new HashSet<>();
+
+        loop.getDescendantsStream()
+                .filter(ASSIGN_STMT::check)
+                .map(assign -> assign.getChild(0))
+                .filter(VAR_REF_EXPR::check)
+                .forEach(lhs -> assigned.add(lhs.get("name")));
+
+        return assigned;
+    }
+
+    /**
+     * Constants with the same value at the end of every branch.
+     */
+    private static Map<String, JmmNode> meet(List<Map<String, JmmNode>> branches) {
+        var result = new HashMap<>(branches.get(0));
+
+        for (var branch : branches.subList(1, branches.size())) {
+            result.entrySet().removeIf(entry -> {
+                var other = branch.get(entry.getKey());
+                return other == null || !ConstantFoldingVisitor.sameLiteral(entry.getValue(), other);
+            });
+        }
+
+        return result;
+    }
+}
@@ -0,0 +1,207 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes the copies between variables of an OLLIR method, by giving both variables of a copy the same name
+ * whenever their values are never needed at the same time.
+ * <p>
+ * The code generated for 'x = a + b' computes the sum into a temporary and then copies it, as in
+ * 'tmp0 := a + b; x := tmp0'. As 'tmp0' and 'x' do not interfere, 'tmp0' is renamed to 'x' everywhere in the method,
+ * which turns the copy into 'x := x' and lets it be removed, leaving 'x := a + b'. Since whole methods are renamed,
+ * copies that are far from the definition of the copied variable are removed as well.
+ * <p>
+ * The variable that is copied is renamed to the one it is copied into, so names written by the programmer are kept
+ * over temporaries. Parameters are never renamed, as their value comes from the caller.
+ */
+public class CopyCoalescing {
+
+    private final Method method;
+    private final List<Instruction> instructions;
+
+    public CopyCoalescing(Method method) {
+        this.method = method;
+        this.instructions = method.getInstructions();
+    }
+
+    /**
+     * @return true if any copy was removed
+     */
+    public boolean coalesce() {
+        boolean changed = false;
+
+        boolean merged = true;
+        while (merged) {
+            merged = false;
+
+            var liveness = Liveness.analyze(method);
+            for (var instruction : instructions) {
+                if (!isCopy(instruction)) {
+                    continue;
+                }
+
+                var assign = (AssignInstruction) instruction;
+                var dest = ((Operand) assign.getDest()).getName();
+                var source = ((Operand) ((SingleOpInstruction) assign.getRhs()).getSingleOperand()).getName();
+
+                if (source.equals(dest)) {
+                    continue;
+                }
+
+                if (canMerge(source, dest, liveness)) {
+                    rename(source, dest);
+                    merged = true;
+                } else if (canMerge(dest, source, liveness)) {
+                    rename(dest, source);
+                    merged = true;
+                }
+
+                // Renaming changes the liveness of the method
+                if (merged) {
+                    break;
+                }
+            }
+
+            changed |= merged;
+        }
+
+        changed |= removeSelfCopies();
+
+        if (changed) {
+            method.getVarTable().clear();
+            method.buildVarTable();
+        }
+
+        return changed;
+    }
+
+    /**
+     * Checks if the instruction copies a variable into another, as in 'x := y'.
+     */
+    private boolean isCopy(Instruction instruction) {
+        if (!(instruction instanceof AssignInstruction assign) || !(assign.getRhs() instanceof SingleOpInstruction rhs)) {
+            return false;
+        }
+
+        return isVariable(assign.getDest()) && isVariable(rhs.getSingleOperand());
+    }
+
+    private boolean isVariable(Element element) {
+        if (!(element instanceof Operand operand) || element instanceof ArrayOperand || operand.getName().equals("this")) {
+            return false;
+        }
+
+        var descriptor = method.getVarTable().get(operand.getName());
+        return descriptor != null && descriptor.getScope() != VarScope.FIELD;
+    }
+
+    /**
+     * Checks if 'from' can be renamed to 'to' without changing the values the method reads.
+     */
+    private boolean canMerge(String from, String to, Liveness liveness) {
+        var varTable = method.getVarTable();
+        var fromDescriptor = varTable.get(from);
+        var toDescriptor = varTable.get(to);
+
+        if (fromDescriptor.getScope() != VarScope.LOCAL
+                || !fromDescriptor.getVarType().toString().equals(toDescriptor.getVarType().toString())) {
+            return false;
+        }
+
+        return !interfere(from, to, liveness);
+    }
+
+    /**
+     * Two variables interfere if one of them is written while the other is live, unless it is written by a copy of
+     * the other, in which case both hold the same value.
+     */
+    private boolean interfere(String first, String second, Liveness liveness) {
+        for (int i = 0; i < liveness.getNumInstructions(); i++) {
+            var defs = liveness.getDefs(i);
+            var liveOut = liveness.getLiveOut(i);
+
+            boolean firstClobbers = defs.contains(first) && liveOut.contains(second);
+            boolean secondClobbers = defs.contains(second) && liveOut.contains(first);
+            if ((firstClobbers || secondClobbers) && !copiesBetween(instructions.get(i), first, second)) {
+                return true;
+            }
+        }
+
+        // Parameters are written when the method starts
+        if (liveness.getNumInstructions() > 0) {
+            var liveAtEntry = liveness.getLiveIn(0);
+            return isParameter(first) && liveAtEntry.contains(second) || isParameter(second) && liveAtEntry.contains(first);
+        }
+
+        return false;
+    }
+
+    private boolean copiesBetween(Instruction instruction, String first, String second) {
+        if (!isCopy(instruction)) {
+            return false;
+        }
+
+        var assign = (AssignInstruction) instruction;
+        var dest = ((Operand) assign.getDest()).getName();
+        var source = ((Operand) ((SingleOpInstruction) assign.getRhs()).getSingleOperand()).getName();
+
+        return dest.equals(first) && source.equals(second) || dest.equals(second) && source.equals(first);
+    }
+
+    private boolean isParameter(String name) {
+        return method.getVarTable().get(name).getScope() == VarScope.PARAMETER;
+    }
+
+    /**
+     * Renames every read and write of a variable.
+     */
+    private void rename(String from, String to) {
+        for (var instruction : instructions) {
+            List<Element> elements = new ArrayList<>(Liveness.getReadElements(instruction));
+            if (instruction instanceof AssignInstruction assign) {
+                elements.add(assign.getDest());
+            }
+
+            for (var element : elements) {
+                rename(element, from, to);
+            }
+        }
+    }
+
+    private void rename(Element element, String from, String to) {
+        if (!(element instanceof Operand operand)) {
+            return;
+        }
+
+        if (operand.getName().equals(from)) {
+            operand.setName(to);
+        }
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            for (var index : arrayOperand.getIndexOperands()) {
+                rename(index, from, to);
+            }
+        }
+    }
+
+    private boolean removeSelfCopies() {
+        boolean changed = false;
+
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            var instruction = instructions.get(i);
+            if (isCopy(instruction) && copiesBetween(instruction, getDestName(instruction), getDestName(instruction))) {
+                OptUtils.removeInstruction(method, i);
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private static String getDestName(Instruction instruction) {
+        return ((Operand) ((AssignInstruction) instruction).getDest()).getName();
+    }
+}
@@ -0,0 +1,217 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Removes the instructions of an OLLIR method that have no effect on its result.
+ * <p>
+ * Branches whose condition is a constant become gotos or are removed, instructions that can no longer be reached
+ * are deleted, as are gotos to the next instruction, assignments whose value is never read and labels no branch
+ * jumps to. Each removal may allow others, so they are repeated until nothing changes.
+ * <p>
+ * The instructions and labels of the method are changed in place, so this must run before the labels of each
+ * instruction are first requested with {@link Method#getLabels(Instruction)}, which caches them.
+ */
+public class DeadCodeElimination {
+
+    private final Method method;
+    private final List<Instruction> instructions;
+
+    public DeadCodeElimination(Method method) {
+        this.method = method;
+        this.instructions = method.getInstructions();
+    }
+
+    /**
+     * @return true if any instruction was removed or replaced
+     */
+    public boolean eliminate() {
+        boolean changed = false;
+
+        boolean round = true;
+        while (round) {
+            round = foldConstantBranches();
+            round |= removeUnreachable();
+            round |= removeGotosToNext();
+            round |= removeDeadAssignments();
+            round |= removeUnusedLabels();
+
+            changed |= round;
+        }
+
+        if (changed) {
+            // Variables that are no longer used should not take a register
+            method.getVarTable().clear();
+            method.buildVarTable();
+        }
+
+        return changed;
+    }
+
+    /**
+     * A branch that is always taken becomes a goto, and one that is never taken is removed.
+     */
+    private boolean foldConstantBranches() {
+        boolean changed = false;
+
+        for (int i = 0; i < instructions.size(); i++) {
+            if (!(instructions.get(i) instanceof CondBranchInstruction branch)) {
+                continue;
+            }
+
+            var value = evaluate(branch.getCondition());
+            if (value == null) {
+                continue;
+            }
+
+            if (value != 0) {
+                OptUtils.replaceInstruction(method, i, new GotoInstruction(branch.getLabel()));
+            } else {
+                OptUtils.removeInstruction(method, i);
+                i--;
+            }
+            changed = true;
+        }
+
+        return changed;
+    }
+
+    private boolean removeUnreachable() {
+        if (instructions.isEmpty()) {
+            return false;
+        }
+
+        var liveness = Liveness.analyze(method);
+        var reachable = new boolean[instructions.size()];
+        reachable[0] = true;
+
+        var worklist = new ArrayDeque<Integer>();
+        worklist.add(0);
+        while (!worklist.isEmpty()) {
+            for (int successor : liveness.getSuccessors(worklist.poll())) {
+                if (!reachable[successor]) {
+                    reachable[successor] = true;
+                    worklist.add(successor);
+                }
+            }
+        }
+
+        boolean changed = false;
+        for (int i = instructions.size() - 1; i >= 0; i--) {
+            if (!reachable[i]) {
+                OptUtils.removeInstruction(method, i);
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    private boolean removeGotosToNext() {
+        boolean changed = false;
+
+        for (int i = 0; i + 1 < instructions.size(); i++) {
+            if (instructions.get(i) instanceof GotoInstruction gotoInstruction
+                    && method.getLabels().get(gotoInstruction.getLabel()) == instructions.get(i + 1)) {
+                OptUtils.removeInstruction(method, i);
+                i--;
+                changed = true;
+            }
+        }
+
+        return changed;
+    }
+
+    /**
+     * Removes the assignments to variables that are not live after them, as long as computing the value has no
+     * other effect. Removing an assignment may leave the variables it read dead as well, so this is repeated.
+     */
+    private boolean removeDeadAssignments() {
+        boolean changed = false;
+
+        boolean removed = true;
+        while (removed && !instructions.isEmpty()) {
+            removed = false;
+
+            var liveness = Liveness.analyze(method);
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                if (!(instructions.get(i) instanceof AssignInstruction assign) || !OptUtils.hasNoSideEffects(assign.getRhs())) {
+                    continue;
+                }
+
+                var defs = liveness.getDefs(i);
+                if (!defs.isEmpty() && defs.stream().noneMatch(liveness.getLiveOut(i)::contains)) {
+                    OptUtils.removeInstruction(method, i);
+                    removed = true;
+                }
+            }
+
+            changed |= removed;
+        }
+
+        return changed;
+    }
+
+    private boolean removeUnusedLabels() {
+        Set<String> targets = new HashSet<>();
+        for (var instruction : instructions) {
+            if (instruction instanceof GotoInstruction gotoInstruction) {
+                targets.add(gotoInstruction.getLabel());
+            } else if (instruction instanceof CondBranchInstruction branch) {
+                targets.add(branch.getLabel());
+            }
+        }
+
+        return method.getLabels().keySet().retainAll(targets);
+    }
+
+    /**
+     * Value of a condition made only of literals, or null if it depends on a variable.
+     */
+    private static Integer evaluate(Instruction condition) {
+        if (condition instanceof SingleOpInstruction singleOp) {
+            return OptUtils.getIntLiteral(singleOp.getSingleOperand());
+        }
+
+        if (condition instanceof UnaryOpInstruction unaryOp) {
+            var operand = OptUtils.getIntLiteral(unaryOp.getOperand());
+            if (operand == null) {
+                return null;
+            }
+
+            var opType = unaryOp.getOperation().getOpType();
+            return opType == OperationType.NOTB || opType == OperationType.NOT ? toInt(operand == 0) : null;
+        }
+
+        if (condition instanceof BinaryOpInstruction binaryOp) {
+            var left = OptUtils.getIntLiteral(binaryOp.getLeftOperand());
+            var right = OptUtils.getIntLiteral(binaryOp.getRightOperand());
+            if (left == null || right == null) {
+                return null;
+            }
+
+            return switch (binaryOp.getOperation().getOpType()) {
+                case LTH -> toInt(left < right);
+                case LTE -> toInt(left <= right);
+                case GTH -> toInt(left > right);
+                case GTE -> toInt(left >= right);
+                case EQ -> toInt(left.equals(right));
+                case NEQ -> toInt(!left.equals(right));
+                case ANDB -> toInt(left != 0 && right != 0);
+                case ORB -> toInt(left != 0 || right != 0);
+                default -> null;
+            };
+        }
+
+        return null;
+    }
+
+    private static int toInt(boolean value) {
+        return value ? 1 : 0;
+    }
+}
@@ -1,27 +1,104 @@
 package pt.up.fe.comp2024.optimization;
 
+import org.specs.comp.ollir.Method;
 import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
 import pt.up.fe.comp.jmm.ollir.JmmOptimization;
 import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp.jmm.report.Stage;
+import pt.up.fe.comp2024.CompilerConfig;
 
 import java.util.Collections;
+import java.util.HashMap;
 
 public class JmmOptimizationImpl implements JmmOptimization {
 
     @Override
+    public JmmSemanticsResult optimize(JmmSemanticsResult semanticsResult) {
+
+        if (!CompilerConfig.getOptimize(semanticsResult.getConfig())) {
+            return semanticsResult;
+        }
+
+        var constantPropagation = new ConstantPropagationVisitor(semanticsResult.getSymbolTable());
+        constantPropagation.visit(semanticsResult.getRootNode(), new HashMap<>());
+
+        return semanticsResult;
+    }
+
+    /**
+     * Builds the OLLIR objects directly from the AST, which is the only way OLLIR is generated. The OLLIR code is only
+     * rendered from them when it is requested, e.g. to print it or to store it in the cache.
+     */
+    @Override
     public OllirResult toOllir(JmmSemanticsResult semanticsResult) {
 
-        var visitor = new OllirGeneratorVisitor(semanticsResult.getSymbolTable());
-        var ollirCode = visitor.visit(semanticsResult.getRootNode());
+        boolean rotateLoops = CompilerConfig.getLoopRotation(semanticsResult.getConfig());
 
-        return new OllirResult(semanticsResult, ollirCode, Collections.emptyList());
+        var builder = new OllirIrGeneratorVisitor(semanticsResult.getSymbolTable(), rotateLoops);
+        return new OllirIrResult(semanticsResult, builder.build(semanticsResult.getRootNode()), Collections.emptyList());
     }
 
     @Override
     public OllirResult optimize(OllirResult ollirResult) {
 
-        //TODO: Do your OLLIR-based optimizations here
+        boolean optimize = CompilerConfig.getOptimize(ollirResult.getConfig());
+        if (optimize) {
+            ollirResult.getOllirClass().getMethods().forEach(this::optimizeMethod);
+        }
+
+        allocateRegisters(ollirResult);
+
+        if (!optimize) {
+            return ollirResult;
+        }
+
+        // The class unit was changed in place, so its code is rendered again
+        return new OllirIrResult(ollirResult);
+    }
+
+    /**
+     * Runs the optimizations over the OLLIR code of a method until none of them changes it, since each one may allow
+     * the others to remove more instructions.
+     */
+    private void optimizeMethod(Method method) {
+        boolean changed = true;
+        while (changed) {
+            changed = new LoopInvariantCodeMotion(method).hoist();
+            changed |= new LocalValueNumbering(method).number();
+            changed |= new CopyCoalescing(method).coalesce();
+            changed |= new DeadCodeElimination(method).eliminate();
+        }
+    }
+
+    /**
+     * Assigns the registers of the local variables as given by '-r', if enabled.
+     * <p>
+     * OLLIR code does not keep the registers, so OLLIR code that was already optimized, e.g. read back from the
+     * compilation cache, must have its registers assigned again.
+     */
+    public OllirResult allocateRegisters(OllirResult ollirResult) {
+        int maxRegisters = CompilerConfig.getRegisterAllocation(ollirResult.getConfig());
+        if (maxRegisters >= 0) {
+            allocateRegisters(ollirResult, maxRegisters);
+        }
 
         return ollirResult;
     }
+
+    /**
+     * Assigns the registers of the local variables of each method, with at most the given number of registers per
+     * method, or as few as possible when it is 0.
+     */
+    private void allocateRegisters(OllirResult ollirResult, int maxRegisters) {
+        for (var method : ollirResult.getOllirClass().getMethods()) {
+            int numRegisters = new RegisterAllocator(method).allocate(maxRegisters);
+
+            if (maxRegisters > 0 && numRegisters > maxRegisters) {
+                ollirResult.getReports().add(Report.newError(Stage.OPTIMIZATION, -1, -1,
+                        "Method '" + method.getMethodName() + "' needs at least " + numRegisters
+                                + " JVM registers, but '-r' allows only " + maxRegisters, null));
+            }
+        }
+    }
 }
@@ -0,0 +1,227 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Live variables before and after each instruction of an OLLIR method, computed with a backward dataflow analysis
+ * over its control flow graph.
+ * <p>
+ * Only local variables and parameters are tracked: 'this', fields and class names are never part of the results.
+ * Instructions are identified by their index in {@link Method#getInstructions()}.
+ */
+public class Liveness {
+
+    private final Method method;
+    private final List<Instruction> instructions;
+    private final List<List<Integer>> successors;
+    private final List<Set<String>> defs;
+    private final List<Set<String>> uses;
+    private final List<Set<String>> liveIn;
+    private final List<Set<String>> liveOut;
+
+    private Liveness(Method method) {
+        this.method = method;
+        this.instructions = method.getInstructions();
+        this.successors = new ArrayList<>(instructions.size());
+        this.defs = new ArrayList<>(instructions.size());
+        this.uses = new ArrayList<>(instructions.size());
+        this.liveIn = new ArrayList<>(instructions.size());
+        this.liveOut = new ArrayList<>(instructions.size());
+    }
+
+    public static Liveness analyze(Method method) {
+        var liveness = new Liveness(method);
+        liveness.compute();
+
+        return liveness;
+    }
+
+    public Method getMethod() {
+        return method;
+    }
+
+    public int getNumInstructions() {
+        return instructions.size();
+    }
+
+    public List<Integer> getSuccessors(int index) {
+        return successors.get(index);
+    }
+
+    /**
+     * Variable written by the instruction, if any.
+     */
+    public Set<String> getDefs(int index) {
+        return defs.get(index);
+    }
+
+    /**
+     * Variables read by the instruction.
+     */
+    public Set<String> getUses(int index) {
+        return uses.get(index);
+    }
+
+    public Set<String> getLiveIn(int index) {
+        return liveIn.get(index);
+    }
+
+    public Set<String> getLiveOut(int index) {
+        return liveOut.get(index);
+    }
+
+    private void compute() {
+        Map<Instruction, Integer> indexes = new IdentityHashMap<>();
+        for (int i = 0; i < instructions.size(); i++) {
+            indexes.put(instructions.get(i), i);
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+
+            successors.add(getSuccessors(instruction, i, indexes));
+            defs.add(getDefs(instruction));
+            uses.add(getUses(instruction));
+            liveIn.add(new HashSet<>());
+            liveOut.add(new HashSet<>());
+        }
+
+        // Iterating backwards converges in few passes, since most edges go forward
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+
+            for (int i = instructions.size() - 1; i >= 0; i--) {
+                var out = liveOut.get(i);
+                for (int successor : successors.get(i)) {
+                    changed |= out.addAll(liveIn.get(successor));
+                }
+
+                var in = new HashSet<>(out);
+                in.removeAll(defs.get(i));
+                in.addAll(uses.get(i));
+                changed |= liveIn.get(i).addAll(in);
+            }
+        }
+    }
+
+    private List<Integer> getSuccessors(Instruction instruction, int index, Map<Instruction, Integer> indexes) {
+        List<Integer> instructionSuccessors = new ArrayList<>(2);
+
+        if (instruction instanceof GotoInstruction gotoInstruction) {
+            instructionSuccessors.add(getLabelIndex(gotoInstruction.getLabel(), indexes));
+        } else if (instruction instanceof CondBranchInstruction branch) {
+            instructionSuccessors.add(getLabelIndex(branch.getLabel(), indexes));
+        }
+
+        boolean fallsThrough = !(instruction instanceof GotoInstruction) && !(instruction instanceof ReturnInstruction);
+        if (fallsThrough && index + 1 < instructions.size()) {
+            instructionSuccessors.add(index + 1);
+        }
+
+        return instructionSuccessors;
+    }
+
+    private int getLabelIndex(String label, Map<Instruction, Integer> indexes) {
+        var target = method.getLabels().get(label);
+        if (target == null) {
+            throw new RuntimeException("Branch to undefined label '" + label + "' in method '" + method.getMethodName() + "'");
+        }
+
+        return indexes.get(target);
+    }
+
+    private Set<String> getDefs(Instruction instruction) {
+        Set<String> instructionDefs = new HashSet<>(1);
+
+        // Storing into an array reads the array reference, it does not write the variable
+        if (instruction instanceof AssignInstruction assign && !(assign.getDest() instanceof ArrayOperand)) {
+            addVariable(assign.getDest(), instructionDefs);
+        }
+
+        return instructionDefs;
+    }
+
+    private Set<String> getUses(Instruction instruction) {
+        Set<String> instructionUses = new HashSet<>();
+
+        for (var element : getReadElements(instruction)) {
+            addVariable(element, instructionUses);
+        }
+
+        return instructionUses;
+    }
+
+    /**
+     * Elements read by an instruction, including those of the instructions nested in it.
+     */
+    public static List<Element> getReadElements(Instruction instruction) {
+        List<Element> elements = new ArrayList<>();
+        addReadElements(instruction, elements);
+
+        return elements;
+    }
+
+    private static void addReadElements(Instruction instruction, List<Element> elements) {
+        if (instruction instanceof AssignInstruction assign) {
+            if (assign.getDest() instanceof ArrayOperand arrayDest) {
+                elements.add(arrayDest);
+            }
+            addReadElements(assign.getRhs(), elements);
+        } else if (instruction instanceof SingleOpInstruction singleOp) {
+            elements.add(singleOp.getSingleOperand());
+        } else if (instruction instanceof BinaryOpInstruction binaryOp) {
+            elements.add(binaryOp.getLeftOperand());
+            elements.add(binaryOp.getRightOperand());
+        } else if (instruction instanceof UnaryOpInstruction unaryOp) {
+            elements.add(unaryOp.getOperand());
+        } else if (instruction instanceof CondBranchInstruction branch) {
+            addReadElements(branch.getCondition(), elements);
+        } else if (instruction instanceof ReturnInstruction ret) {
+            if (ret.hasReturnValue()) {
+                elements.add(ret.getOperand());
+            }
+        } else if (instruction instanceof PutFieldInstruction putField) {
+            elements.add(putField.getValue());
+        } else if (instruction instanceof CallInstruction call) {
+            // The caller of 'new' and of static calls is a class, not a variable
+            var invocationType = call.getInvocationType();
+            if (invocationType != CallType.NEW && invocationType != CallType.invokestatic) {
+                elements.add(call.getCaller());
+            }
+            elements.addAll(call.getArguments());
+        }
+    }
+
+    private void addVariable(Element element, Set<String> variables) {
+        if (!(element instanceof Operand operand)) {
+            return;
+        }
+
+        if (isVariable(operand.getName())) {
+            variables.add(operand.getName());
+        }
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            for (var index : arrayOperand.getIndexOperands()) {
+                addVariable(index, variables);
+            }
+        }
+    }
+
+    private boolean isVariable(String name) {
+        if (name.equals("this")) {
+            return false;
+        }
+
+        var descriptor = method.getVarTable().get(name);
+        return descriptor != null && descriptor.getScope() != VarScope.FIELD;
+    }
+}
@@ -0,0 +1,233 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reuses values an OLLIR method already computed, by numbering the values of the expressions of each basic block.
+ * <p>
+ * Every variable is given the number of the value it holds, and an expression is identified by its operation and
+ * the numbers of its operands, so two expressions with the same identity compute the same value. When an expression
+ * is found again while a variable still holds its value, it is replaced by a copy of that variable, which
+ * {@link CopyCoalescing} may then remove.
+ * <p>
+ * Arithmetic, array lengths and array elements are reused. Array elements are only reused until an array is written
+ * or a method is called, as either may change any array.
+ * <p>
+ * A block starts at each label, since other paths may join there. The code after a conditional branch continues
+ * the block, as only the branch leads to it.
+ */
+public class LocalValueNumbering {
+
+    private final Method method;
+    private final List<Instruction> instructions;
+
+    /**
+     * Number of the value each variable holds.
+     */
+    private final Map<String, Integer> variableNumbers;
+
+    /**
+     * Number of the value of each expression computed in the block.
+     */
+    private final Map<String, Integer> expressionNumbers;
+
+    /**
+     * A variable that holds each value.
+     */
+    private final Map<Integer, String> holders;
+
+    private int nextNumber;
+
+    /**
+     * Increases whenever an array may be written, so array elements read before are not reused.
+     */
+    private int arrayVersion;
+
+    public LocalValueNumbering(Method method) {
+        this.method = method;
+        this.instructions = method.getInstructions();
+        this.variableNumbers = new HashMap<>();
+        this.expressionNumbers = new HashMap<>();
+        this.holders = new HashMap<>();
+    }
+
+    /**
+     * @return true if any expression was replaced
+     */
+    public boolean number() {
+        Set<Instruction> targets = Collections.newSetFromMap(new IdentityHashMap<>());
+        targets.addAll(method.getLabels().values());
+
+        boolean changed = false;
+        for (int i = 0; i < instructions.size(); i++) {
+            var instruction = instructions.get(i);
+
+            if (targets.contains(instruction)) {
+                startBlock();
+            }
+
+            if (instruction instanceof AssignInstruction assign) {
+                changed |= numberAssign(i, assign);
+            } else if (instruction instanceof CallInstruction) {
+                arrayVersion++;
+            }
+        }
+
+        return changed;
+    }
+
+    private void startBlock() {
+        variableNumbers.clear();
+        expressionNumbers.clear();
+        holders.clear();
+    }
+
+    private boolean numberAssign(int index, AssignInstruction assign) {
+        var rhs = assign.getRhs();
+        var key = getKey(rhs);
+
+        boolean replaced = false;
+        if (key != null && isReusable(rhs) && expressionNumbers.containsKey(key)) {
+            var holder = holders.get(expressionNumbers.get(key));
+
+            if (holder != null) {
+                var type = assign.getTypeOfAssign();
+                var copy = new SingleOpInstruction(new Operand(holder, type));
+                OptUtils.replaceInstruction(method, index, new AssignInstruction(assign.getDest(), type, copy));
+                replaced = true;
+            }
+        }
+
+        if (rhs instanceof CallInstruction) {
+            arrayVersion++;
+        }
+
+        // Storing into an array changes no variable
+        if (assign.getDest() instanceof ArrayOperand) {
+            arrayVersion++;
+            return replaced;
+        }
+
+        int number;
+        if (rhs instanceof SingleOpInstruction singleOp && !(singleOp.getSingleOperand() instanceof ArrayOperand)) {
+            // A copy holds the same value as the variable or literal it copies
+            number = getNumber(singleOp.getSingleOperand());
+        } else if (key != null) {
+            number = expressionNumbers.computeIfAbsent(key, k -> nextNumber++);
+        } else {
+            number = nextNumber++;
+        }
+
+        define(((Operand) assign.getDest()).getName(), number);
+
+        return replaced;
+    }
+
+    /**
+     * Only expressions that are cheaper to copy than to compute again are replaced.
+     */
+    private static boolean isReusable(Instruction rhs) {
+        if (rhs instanceof SingleOpInstruction singleOp) {
+            return singleOp.getSingleOperand() instanceof ArrayOperand;
+        }
+
+        return rhs instanceof BinaryOpInstruction || rhs instanceof UnaryOpInstruction
+                || rhs instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength;
+    }
+
+    private void define(String variable, int number) {
+        var previous = variableNumbers.put(variable, number);
+
+        // The variable no longer holds its previous value, but others may still do
+        if (previous != null && variable.equals(holders.get(previous))) {
+            holders.remove(previous);
+            variableNumbers.forEach((other, otherNumber) -> {
+                if (otherNumber.equals(previous)) {
+                    holders.putIfAbsent(previous, other);
+                }
+            });
+        }
+
+        holders.putIfAbsent(number, variable);
+    }
+
+    /**
+     * Identity of the value computed by the expression, or null if it is not always the same, as for calls, or if it
+     * is a single variable or literal, whose number is used instead.
+     */
+    private String getKey(Instruction rhs) {
+        if (rhs instanceof SingleOpInstruction singleOp) {
+            var operand = singleOp.getSingleOperand();
+
+            if (operand instanceof ArrayOperand arrayOperand) {
+                var key = new StringBuilder("[] ").append(getNumber(arrayOperand));
+                for (var index : arrayOperand.getIndexOperands()) {
+                    key.append(" ").append(getNumber(index));
+                }
+
+                return key.append(" @").append(arrayVersion).toString();
+            }
+
+            return null;
+        }
+
+        if (rhs instanceof BinaryOpInstruction binaryOp) {
+            var opType = binaryOp.getOperation().getOpType();
+            int left = getNumber(binaryOp.getLeftOperand());
+            int right = getNumber(binaryOp.getRightOperand());
+
+            // 'a + b' and 'b + a' are the same value
+            if (isCommutative(opType) && left > right) {
+                int swap = left;
+                left = right;
+                right = swap;
+            }
+
+            return opType + " " + left + " " + right;
+        }
+
+        if (rhs instanceof UnaryOpInstruction unaryOp) {
+            return unaryOp.getOperation().getOpType() + " " + getNumber(unaryOp.getOperand());
+        }
+
+        // The length of an array never changes
+        if (rhs instanceof CallInstruction call && call.getInvocationType() == CallType.arraylength) {
+            return "length " + getNumber(call.getCaller());
+        }
+
+        return null;
+    }
+
+    private static boolean isCommutative(OperationType opType) {
+        return opType == OperationType.ADD || opType == OperationType.MUL || opType == OperationType.EQ
+                || opType == OperationType.NEQ || opType == OperationType.ANDB || opType == OperationType.ORB;
+    }
+
+    /**
+     * Number of the value of an operand. Literals are numbered by their value and type, and variables not yet
+     * written in the block are given a new number.
+     */
+    private int getNumber(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return expressionNumbers.computeIfAbsent("#" + literal.getLiteral() + "." + literal.getType(),
+                    k -> nextNumber++);
+        }
+
+        var name = ((Operand) element).getName();
+        var number = variableNumbers.get(name);
+        if (number == null) {
+            number = nextNumber++;
+            variableNumbers.put(name, number);
+            holders.putIfAbsent(number, name);
+        }
+
+        return number;
+    }
+}
@@ -0,0 +1,255 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Moves the assignments of an OLLIR method whose value does not change while a loop runs to just before the loop,
+ * so they are computed once instead of in every iteration.
+ * <p>
+ * A loop is found from a branch back to an earlier instruction, its header, and is made of the instructions from the
+ * header to the branch. The code generated for while statements has no other way into a loop than its header, and
+ * loops where some branch from outside jumps past the header, or to it, are left unchanged. Hoisted instructions are
+ * placed right before the header, where the code before the loop falls through, so they are not part of the loop.
+ * <p>
+ * An assignment 'x := e' is hoisted when:
+ * <ul>
+ *     <li>e is arithmetic, a copy, the length of an array, or a field of 'this' that the loop does not write;</li>
+ *     <li>no variable e reads is written in the loop;</li>
+ *     <li>x is written only there in the loop, and its value from before the loop or after it is never read, so
+ *     only the reads of that assignment see x;</li>
+ *     <li>e cannot throw, or it would be computed in the first iteration before anything the program can observe,
+ *     or it is the length of an array whose length was computed before the loop.</li>
+ * </ul>
+ */
+public class LoopInvariantCodeMotion {
+
+    private final Method method;
+    private final List<Instruction> instructions;
+
+    public LoopInvariantCodeMotion(Method method) {
+        this.method = method;
+        this.instructions = method.getInstructions();
+    }
+
+    /**
+     * @return true if any instruction was moved
+     */
+    public boolean hoist() {
+        boolean changed = false;
+
+        // Each instruction moved changes the indexes of the loops, so they are found again
+        boolean moved = true;
+        while (moved) {
+            moved = hoistOne();
+            changed |= moved;
+        }
+
+        return changed;
+    }
+
+    private boolean hoistOne() {
+        var liveness = Liveness.analyze(method);
+
+        for (int end = 0; end < instructions.size(); end++) {
+            for (int header : liveness.getSuccessors(end)) {
+                if (header > end || !hasSingleEntry(header, end, liveness)) {
+                    continue;
+                }
+
+                for (int i = header; i <= end; i++) {
+                    if (canHoist(i, header, end, liveness)) {
+                        // The labels of a hoisted header stay in the loop, on the instruction after it
+                        var instruction = instructions.get(i);
+                        OptUtils.removeInstruction(method, i);
+                        instructions.add(header, instruction);
+                        return true;
+                    }
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the loop is only entered by falling through to its header from the instruction before it.
+     */
+    private boolean hasSingleEntry(int header, int end, Liveness liveness) {
+        if (header > 0 && !fallsThrough(instructions.get(header - 1))) {
+            return false;
+        }
+
+        for (int i = 0; i < instructions.size(); i++) {
+            if (i >= header && i <= end) {
+                continue;
+            }
+
+            for (int successor : liveness.getSuccessors(i)) {
+                boolean fallThrough = i == header - 1 && successor == header && fallsThrough(instructions.get(i))
+                        && !isBranchTo(instructions.get(i), header);
+                if (successor >= header && successor <= end && !fallThrough) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    private boolean isBranchTo(Instruction instruction, int index) {
+        String label = null;
+        if (instruction instanceof CondBranchInstruction branch) {
+            label = branch.getLabel();
+        } else if (instruction instanceof GotoInstruction gotoInstruction) {
+            label = gotoInstruction.getLabel();
+        }
+
+        return label != null && method.getLabels().get(label) == instructions.get(index);
+    }
+
+    private static boolean fallsThrough(Instruction instruction) {
+        return !(instruction instanceof GotoInstruction) && !(instruction instanceof ReturnInstruction);
+    }
+
+    private boolean canHoist(int index, int header, int end, Liveness liveness) {
+        if (!(instructions.get(index) instanceof AssignInstruction assign) || assign.getDest() instanceof ArrayOperand) {
+            return false;
+        }
+
+        var rhs = assign.getRhs();
+        if (!isCandidate(rhs, header, end)) {
+            return false;
+        }
+
+        // The operands must hold the same values in every iteration
+        List<String> written = new ArrayList<>();
+        for (int i = header; i <= end; i++) {
+            written.addAll(liveness.getDefs(i));
+        }
+        for (var element : Liveness.getReadElements(rhs)) {
+            if (element instanceof Operand operand && written.contains(operand.getName())) {
+                return false;
+            }
+        }
+
+        var dest = ((Operand) assign.getDest()).getName();
+        if (written.stream().filter(dest::equals).count() != 1 || liveness.getLiveIn(header).contains(dest)) {
+            return false;
+        }
+
+        // Nothing after the loop may read the variable, as the assignment may not run in every iteration
+        for (int i = header; i <= end; i++) {
+            for (int successor : liveness.getSuccessors(i)) {
+                if ((successor < header || successor > end) && liveness.getLiveIn(successor).contains(dest)) {
+                    return false;
+                }
+            }
+        }
+
+        return OptUtils.hasNoSideEffects(rhs) || runsFirst(index, header) || isComputedBefore(rhs, header);
+    }
+
+    private boolean isCandidate(Instruction rhs, int header, int end) {
+        if (rhs instanceof SingleOpInstruction singleOp) {
+            return !(singleOp.getSingleOperand() instanceof ArrayOperand);
+        }
+
+        if (rhs instanceof BinaryOpInstruction || rhs instanceof UnaryOpInstruction) {
+            return Liveness.getReadElements(rhs).stream().noneMatch(ArrayOperand.class::isInstance);
+        }
+
+        if (rhs instanceof CallInstruction call) {
+            return call.getInvocationType() == CallType.arraylength;
+        }
+
+        if (rhs instanceof GetFieldInstruction getField) {
+            return getField.getObject().getName().equals("this") && !mayWriteField(getField.getField(), header, end);
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the loop writes the field, or calls a method that may write it. Static methods only reach the fields
+     * of an object they are given, and objects are the only arguments that may be 'this'.
+     */
+    private boolean mayWriteField(Operand field, int header, int end) {
+        for (int i = header; i <= end; i++) {
+            var instruction = instructions.get(i);
+            if (instruction instanceof AssignInstruction assign) {
+                instruction = assign.getRhs();
+            }
+
+            if (instruction instanceof PutFieldInstruction putField
+                    && putField.getField().getName().equals(field.getName())) {
+                return true;
+            }
+
+            if (instruction instanceof CallInstruction call && call.getInvocationType() != CallType.arraylength) {
+                boolean passesObject = call.getArguments().stream()
+                        .anyMatch(argument -> argument.getType().getTypeOfElement() == ElementType.OBJECTREF
+                                || argument.getType().getTypeOfElement() == ElementType.THIS);
+                if (call.getInvocationType() != CallType.invokestatic || passesObject) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Checks if the first iteration always reaches the instruction, without running any instruction the program can
+     * observe, so computing it before the loop fails in the same way.
+     */
+    private boolean runsFirst(int index, int header) {
+        for (int i = header; i < index; i++) {
+            var instruction = instructions.get(i);
+            if (!(instruction instanceof AssignInstruction assign) || !OptUtils.hasNoSideEffects(assign.getRhs())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks if the length of the same array was already computed before the loop, on every path that enters it, as
+     * the guard of a while loop does when its condition reads the length. The array is then known not to be null.
+     */
+    private boolean isComputedBefore(Instruction rhs, int header) {
+        if (!(rhs instanceof CallInstruction call) || call.getInvocationType() != CallType.arraylength) {
+            return false;
+        }
+
+        var array = ((Operand) call.getCaller()).getName();
+        var targets = method.getLabels().values();
+
+        for (int i = header - 1; i >= 0; i--) {
+            var instruction = instructions.get(i);
+
+            if (instruction instanceof AssignInstruction assign) {
+                if (assign.getRhs() instanceof CallInstruction previous
+                        && previous.getInvocationType() == CallType.arraylength
+                        && ((Operand) previous.getCaller()).getName().equals(array)) {
+                    return true;
+                }
+
+                if (assign.getDest() instanceof Operand dest && !(dest instanceof ArrayOperand)
+                        && dest.getName().equals(array)) {
+                    return false;
+                }
+            }
+
+            // Other paths may join at a label, and those did not run the instructions before it
+            if (targets.stream().anyMatch(target -> target == instruction)) {
+                return false;
+            }
+        }
+
+        return false;
+    }
+}
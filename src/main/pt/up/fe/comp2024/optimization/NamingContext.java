@@ -0,0 +1,38 @@
+package pt.up.fe.comp2024.optimization;
+
+/**
+ * Numbering of the temporaries and labels created while generating the OLLIR code of one compilation.
+ * <p>
+ * Temporaries and labels are local to a method, so numbering restarts at every method. This keeps the names short
+ * and makes the code of a method independent of the methods before it and of other compilations in the same JVM.
+ * One instance per compilation, shared by the statement and expression visitors.
+ */
+public class NamingContext {
+
+    private int tempNumber;
+    private int ifThenNumber;
+    private int whileNumber;
+
+    public NamingContext() {
+        startMethod();
+    }
+
+    /**
+     * Restarts the numbering, called at the start of each method.
+     */
+    public void startMethod() {
+        tempNumber = -1;
+        ifThenNumber = -1;
+        whileNumber = -1;
+    }
+
+    public String getTemp() { return getTemp("tmp"); }
+
+    public String getTemp(String prefix) { return prefix + getNextTempNum(); }
+
+    public int getNextTempNum() { return ++tempNumber; }
+
+    public int getNextIfThenNum() { return ++ifThenNumber; }
+
+    public int getNextWhileNum() { return ++whileNumber; }
+}
@@ -0,0 +1,72 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence of OLLIR instructions and labels, the object counterpart of a fragment of OLLIR code.
+ * <p>
+ * A label refers to the first instruction that follows it, possibly in a sequence appended later.
+ */
+public class OllirCode {
+
+    /**
+     * Either a label or an instruction.
+     */
+    private record Step(String label, Instruction instruction) {
+    }
+
+    private final List<Step> steps;
+
+    public OllirCode() {
+        this.steps = new ArrayList<>();
+    }
+
+    public OllirCode label(String label) {
+        steps.add(new Step(label, null));
+        return this;
+    }
+
+    public OllirCode add(Instruction instruction) {
+        steps.add(new Step(null, instruction));
+        return this;
+    }
+
+    public OllirCode append(OllirCode code) {
+        steps.addAll(code.steps);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return steps.isEmpty();
+    }
+
+    /**
+     * Adds the instructions to the given method, attaching each label to the instruction that follows it.
+     */
+    public void addTo(Method method) {
+        List<String> labels = new ArrayList<>();
+
+        for (var step : steps) {
+            if (step.label() != null) {
+                labels.add(step.label());
+                continue;
+            }
+
+            for (var label : labels) {
+                method.addLabel(label, step.instruction());
+            }
+            labels.clear();
+
+            method.addInstr(step.instruction());
+        }
+
+        if (!labels.isEmpty()) {
+            throw new RuntimeException("Labels " + labels + " of method '" + method.getMethodName()
+                    + "' are not followed by an instruction");
+        }
+    }
+}
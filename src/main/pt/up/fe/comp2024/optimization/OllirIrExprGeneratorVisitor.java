@@ -0,0 +1,544 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.ScopedSymbol;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Builds the OLLIR objects of JmmNodes that are expressions.
+ * <p>
+ * Instructions are built directly, without going through OLLIR text.
+ */
+public class OllirIrExprGeneratorVisitor extends AJmmVisitor<Void, OllirIrExprResult> {
+
+    private static final String INT_TYPE = ".i32";
+    private static final String BOOL_TYPE = ".bool";
+    private static final String INT_ARRAY_TYPE = ".array.i32";
+
+    private final SymbolTable table;
+
+    private final NamingContext names;
+
+    public OllirIrExprGeneratorVisitor(SymbolTable table, NamingContext names) {
+        this.table = table;
+        this.names = names;
+    }
+
+    @Override
+    protected void buildVisitor() {
+        addVisit(VAR_REF_EXPR, this::visitVarRef);
+        addVisit(PARENTHESES_EXPRESSION, this::visitParenthesesExpr);
+        addVisit(BINARY_EXPR, this::visitBinExpr);
+        addVisit(LOGICAL_EXPRESSION, this::visitLogicalExpr);
+        addVisit(RELATIONAL_EXPRESSION, this::visitRelationalExpr);
+        addVisit(INTEGER_LITERAL, this::visitInteger);
+        addVisit(BOOLEAN_VALUE, this::visitBoolean);
+        addVisit(NOT_EXPRESSION, this::visitNotExpr);
+        addVisit(METHOD_CALL, this::visitMethodCall);
+        addVisit(PROPERTY_ACCESS, this::visitPropertyAccess);
+        addVisit(NEW_CLASS_INSTANCE, this::visitNewClassInstance);
+        addVisit(NEW_ARRAY, this::visitNewArray);
+        addVisit(ARRAY_ACCESS, this::visitArrayAccess);
+        addVisit(ARRAY_INIT, this::visitArrayInit);
+        addVisit(THIS, this::visitThis);
+
+        setDefaultVisit(this::defaultVisit);
+    }
+
+    /**
+     * Builds the instructions that jump to the label when the condition has the given value, and fall through
+     * otherwise.
+     * <p>
+     * '&&' and '!' become jumps instead of boolean values, so the right operand of '&&' is only evaluated when the
+     * left one is true, and no temporaries hold the intermediate booleans.
+     */
+    public OllirCode visitCondition(JmmNode node, boolean jumpWhen, String label) {
+        if (PARENTHESES_EXPRESSION.check(node)) {
+            return visitCondition(node.getChild(0), jumpWhen, label);
+        }
+
+        if (NOT_EXPRESSION.check(node)) {
+            return visitCondition(node.getChild(0), !jumpWhen, label);
+        }
+
+        if (BOOLEAN_VALUE.check(node)) {
+            boolean value = Objects.equals(node.get("value"), "true");
+            return value == jumpWhen ? new OllirCode().add(new GotoInstruction(label)) : new OllirCode();
+        }
+
+        if (LOGICAL_EXPRESSION.check(node)) {
+            var code = new OllirCode();
+
+            // Either operand being false makes the whole condition false
+            if (!jumpWhen) {
+                code.append(visitCondition(node.getChild(0), false, label));
+                code.append(visitCondition(node.getChild(1), false, label));
+                return code;
+            }
+
+            var skipLabel = "skip_" + names.getNextIfThenNum();
+            code.append(visitCondition(node.getChild(0), false, skipLabel));
+            code.append(visitCondition(node.getChild(1), true, label));
+            code.label(skipLabel);
+            return code;
+        }
+
+        if (RELATIONAL_EXPRESSION.check(node)) {
+            var lhs = visit(node.getChild(0));
+            var rhs = visit(node.getChild(1));
+            var operator = jumpWhen ? node.get("op") : OptUtils.negateComparison(node.get("op"));
+
+            var comparison = new BinaryOpInstruction(lhs.getCode(),
+                    new Operation(getOperationType(operator), OptUtils.toIrType(BOOL_TYPE)), rhs.getCode());
+            var branch = new OpCondInstruction(comparison);
+            branch.setLabel(label);
+
+            return new OllirCode().append(lhs.getComputation()).append(rhs.getComputation()).add(branch);
+        }
+
+        // Any other condition is a boolean value
+        var value = visit(node);
+        var code = new OllirCode().append(value.getComputation());
+
+        if (jumpWhen) {
+            return code.add(condBranch(value.getCode(), label));
+        }
+
+        var not = new UnaryOpInstruction(new Operation(OperationType.NOTB, OptUtils.toIrType(BOOL_TYPE)),
+                value.getCode());
+        var branch = new OpCondInstruction(not);
+        branch.setLabel(label);
+
+        return code.add(branch);
+    }
+
+    private OllirIrExprResult visitInteger(JmmNode node, Void unused) {
+        return new OllirIrExprResult(new LiteralElement(node.get("value"), OptUtils.toIrType(INT_TYPE)));
+    }
+
+    private OllirIrExprResult visitBoolean(JmmNode node, Void unused) {
+        var value = Objects.equals(node.get("value"), "true") ? "1" : "0";
+        return new OllirIrExprResult(new LiteralElement(value, OptUtils.toIrType(BOOL_TYPE)));
+    }
+
+    private OllirIrExprResult visitNotExpr(JmmNode node, Void unused) {
+        var child = visit(node.getChild(0));
+        var type = TypeUtils.getExprType(node, table);
+
+        var computation = new OllirCode().append(child.getComputation());
+        var code = new Operand(names.getTemp(), OptUtils.toIrType(type));
+        var not = new UnaryOpInstruction(new Operation(OperationType.NOTB, OptUtils.toIrType(BOOL_TYPE)), child.getCode());
+        computation.add(new AssignInstruction(code, OptUtils.toIrType(type), not));
+
+        return new OllirIrExprResult(code, computation);
+    }
+
+    private OllirIrExprResult visitParenthesesExpr(JmmNode node, Void unused) {
+        return visit(node.getChild(0));
+    }
+
+    private OllirIrExprResult visitLogicalExpr(JmmNode node, Void unused) {
+        var tempVar = names.getTemp();
+
+        var lhs = visit(node.getChild(0));
+        var rhs = visit(node.getChild(1));
+        int ifThenNum = names.getNextIfThenNum();
+
+        var computation = new OllirCode().append(lhs.getComputation());
+
+        computation.add(condBranch(lhs.getCode(), "true_" + ifThenNum));
+        computation.add(assign(boolOperand(tempVar), BOOL_TYPE, boolLiteral("0")));
+        computation.add(new GotoInstruction("end_" + ifThenNum)).label("true_" + ifThenNum);
+        computation.append(rhs.getComputation());
+        computation.add(assign(boolOperand(tempVar), BOOL_TYPE, rhs.getCode()));
+        computation.label("end_" + ifThenNum);
+
+        return new OllirIrExprResult(boolOperand(tempVar), computation);
+    }
+
+    private OllirIrExprResult visitRelationalExpr(JmmNode node, Void unused) {
+        var tempVar = names.getTemp();
+
+        var lhs = visit(node.getChild(0));
+        var rhs = visit(node.getChild(1));
+        int ifThenNum = names.getNextIfThenNum();
+
+        var computation = new OllirCode().append(lhs.getComputation()).append(rhs.getComputation());
+
+        var comparison = new BinaryOpInstruction(lhs.getCode(),
+                new Operation(getOperationType(node.get("op")), OptUtils.toIrType(BOOL_TYPE)), rhs.getCode());
+        var branch = new OpCondInstruction(comparison);
+        branch.setLabel("true_" + ifThenNum);
+
+        computation.add(branch);
+        computation.add(assign(boolOperand(tempVar), BOOL_TYPE, boolLiteral("0")));
+        computation.add(new GotoInstruction("end_" + ifThenNum)).label("true_" + ifThenNum);
+        computation.add(assign(boolOperand(tempVar), BOOL_TYPE, boolLiteral("1")));
+        computation.label("end_" + ifThenNum);
+
+        return new OllirIrExprResult(boolOperand(tempVar), computation);
+    }
+
+    private OllirIrExprResult visitBinExpr(JmmNode node, Void unused) {
+
+        var lhs = visit(node.getChild(0));
+        var rhs = visit(node.getChild(1));
+
+        var computation = new OllirCode().append(lhs.getComputation()).append(rhs.getComputation());
+
+        var resType = OptUtils.toOllirType(TypeUtils.getExprType(node, table));
+        var code = new Operand(names.getTemp(), OptUtils.toIrType(resType));
+
+        var operation = new Operation(getOperationType(node.get("op")), OptUtils.toIrType(resType));
+        computation.add(new AssignInstruction(code, OptUtils.toIrType(resType),
+                new BinaryOpInstruction(lhs.getCode(), operation, rhs.getCode())));
+
+        return new OllirIrExprResult(code, computation);
+    }
+
+    private OllirIrExprResult visitVarRef(JmmNode node, Void unused) {
+
+        var id = node.get("name");
+        var type = TypeUtils.getExprType(node, table);
+
+        // Names without a type are classes, e.g. the owner of a static call
+        if (type == null) {
+            return new OllirIrExprResult(new Operand(id, null));
+        }
+
+        var ollirType = OptUtils.toOllirType(type);
+
+        if (!isField(node, id)) {
+            return new OllirIrExprResult(new Operand(id, OptUtils.toIrType(ollirType)));
+        }
+
+        var temp = new Operand(names.getTemp(), OptUtils.toIrType(ollirType));
+        var getField = new GetFieldInstruction(thisCaller(), new Operand(id, OptUtils.toIrType(ollirType)),
+                OptUtils.toIrType(ollirType));
+        var computation = new OllirCode().add(new AssignInstruction(temp, OptUtils.toIrType(ollirType), getField));
+
+        return new OllirIrExprResult(new Operand(temp.getName(), OptUtils.toIrType(ollirType)), computation);
+    }
+
+    private boolean isField(JmmNode node, String id) {
+        // Get the current method
+        JmmNode parent = node.getParent();
+        while (!parent.getKind().equals("MethodDecl") && !parent.getKind().equals("MainMethodDecl")) {
+            parent = parent.getParent();
+        }
+        String methodName = parent.get("name");
+
+        // Names that are neither locals nor params are fields
+        return JmmSymbolTable.resolve(table, methodName, id)
+                .map(ScopedSymbol::isField)
+                .orElse(true);
+    }
+
+    private OllirIrExprResult visitMethodCall(JmmNode node, Void unused) {
+        var computation = new OllirCode();
+        List<Element> args = new ArrayList<>();
+        String methodName = node.get("methodName");
+
+        // Visit the owner of the method (e.g., an instance of a class, or the class itself for static methods)
+        var ownerExpr = visit(node.getChild(0));
+        computation.append(ownerExpr.getComputation());
+
+        boolean isVarArgs = false;
+        int index = 0;
+
+        if (table.getMethods().contains(methodName)) {
+            for (var param : table.getParameters(methodName)) {
+                if (param.getType().hasAttribute("isVarArgs")) {
+                    isVarArgs = true;
+                    break;
+                }
+                index++;
+            }
+        }
+
+        String tempVarForVarArgs = "";
+        int numArgs = node.getNumChildren() - 1;
+
+        if (isVarArgs) {
+            tempVarForVarArgs = names.getTemp();
+            computation.add(assign(intArrayOperand(tempVarForVarArgs), INT_ARRAY_TYPE,
+                    newArray(intLiteral(String.valueOf(numArgs - index)), INT_ARRAY_TYPE)));
+        }
+
+        // Handle each argument of the method
+        for (int i = 1; i < node.getNumChildren(); i++) {
+
+            if (!isVarArgs || index > i - 1) {
+                var argExpr = visit(node.getChild(i));
+                computation.append(argExpr.getComputation());
+                args.add(argExpr.getCode());
+            } else if (index == i - 1) {
+
+                int indexVarArgs = 0;
+                for (int j = i; j < node.getNumChildren(); j++) {
+                    var argExpr = visit(node.getChild(j));
+                    computation.append(argExpr.getComputation());
+                    computation.add(assign(intArrayAccess(tempVarForVarArgs, intLiteral(String.valueOf(indexVarArgs))),
+                            INT_TYPE, argExpr.getCode()));
+                    indexVarArgs++;
+                }
+            }
+        }
+
+        if (isVarArgs) {
+            args.add(intArrayOperand(tempVarForVarArgs));
+        }
+
+        var ownerType = TypeUtils.getExprType(node.getChild(0), table);
+
+        // Only a call that is a statement by itself discards its result
+        boolean isValueUsed = !EXPRESSION_STMT.check(node.getParent());
+
+        boolean isStatic = ownerType == null;
+
+        // Get the return type
+        var returnType = OptUtils.toOllirType(TypeUtils.getExprType(node, table));
+        var tempVar = new Operand(names.getTemp(), OptUtils.toIrType(returnType));
+
+        var owner = (Operand) ownerExpr.getCode();
+        var caller = isStatic ?
+                new Operand(owner.getName(), new ClassType(ElementType.CLASS, table.getClassName())) :
+                toCaller(owner);
+        var callType = isStatic ? CallType.invokestatic : CallType.invokevirtual;
+
+        // Store the result of the method call in a temporary variable
+        if (isValueUsed) {
+            var call = new CallInstruction(callType, caller, methodNameLiteral(methodName), args,
+                    OptUtils.toIrType(returnType));
+            computation.add(new AssignInstruction(tempVar, OptUtils.toIrType(returnType), call));
+        } else {
+            computation.add(new CallInstruction(callType, caller, methodNameLiteral(methodName), args,
+                    OptUtils.toIrType(returnType), true));
+        }
+
+        return new OllirIrExprResult(new Operand(tempVar.getName(), OptUtils.toIrType(returnType)), computation);
+    }
+
+    private OllirIrExprResult visitPropertyAccess(JmmNode node, Void unused) {
+        if (!node.get("name").equals("length")) return OllirIrExprResult.empty(); // Only length property is supported
+
+        var array = node.getChild(0);
+        var arrayVisit = visit(array);
+
+        // Like the text generator, variables are referred to by name, even if they are fields
+        Element arrayElement = array.getKind().equals("VarRefExpr") ?
+                intArrayOperand(array.get("name")) : arrayVisit.getCode();
+
+        var tempVar = names.getTemp();
+
+        var computation = new OllirCode().append(arrayVisit.getComputation());
+        var arrayLength = new CallInstruction(CallType.arraylength, arrayElement, OptUtils.toIrType(INT_TYPE));
+        computation.add(new AssignInstruction(intOperand(tempVar), OptUtils.toIrType(INT_TYPE), arrayLength));
+
+        return new OllirIrExprResult(intOperand(tempVar), computation);
+    }
+
+    private OllirIrExprResult visitNewArray(JmmNode node, Void unused) {
+
+        // Visit the size of the array
+        var sizeExpr = visit(node.getChild(1));
+        var computation = new OllirCode().append(sizeExpr.getComputation());
+
+        // Get the type of the array
+        var arrayType = OptUtils.toOllirType(TypeUtils.getExprType(node, table));
+        var tempVar = names.getTemp();
+
+        // Store the result of the array creation in a temporary variable
+        computation.add(new AssignInstruction(new Operand(tempVar, OptUtils.toIrType(arrayType)),
+                OptUtils.toIrType(arrayType), newArray(sizeExpr.getCode(), arrayType)));
+
+        return new OllirIrExprResult(new Operand(tempVar, OptUtils.toIrType(arrayType)), computation);
+    }
+
+    private OllirIrExprResult visitArrayAccess(JmmNode node, Void unused) {
+        var arrayVisit = visit(node.getChild(0));
+        var index = visit(node.getChild(1));
+        var tempVar = names.getTemp();
+
+        var computation = new OllirCode().append(index.getComputation()).append(arrayVisit.getComputation());
+
+        boolean onLeftSideOfAssign = false;
+
+        JmmNode parent = node.getParent();
+        while (!parent.getKind().equals("MethodDecl") && !parent.getKind().equals("MainMethodDecl")) {
+            if (parent.getKind().equals("AssignStmt")) {
+                if (parent.getChild(0).equals(node)) onLeftSideOfAssign = true;
+                break;
+            }
+            parent = parent.getParent();
+        }
+
+        var arrayName = ((Operand) arrayVisit.getCode()).getName();
+
+        if (onLeftSideOfAssign) {
+            return new OllirIrExprResult(intArrayAccess(arrayName, index.getCode()), computation);
+        }
+
+        computation.add(assign(intOperand(tempVar), INT_TYPE, intArrayAccess(arrayName, index.getCode())));
+
+        return new OllirIrExprResult(intOperand(tempVar), computation);
+    }
+
+    private OllirIrExprResult visitThis(JmmNode node, Void unused) {
+        return new OllirIrExprResult(new Operand("this", OptUtils.toIrType("." + table.getClassName())));
+    }
+
+    private OllirIrExprResult visitNewClassInstance(JmmNode node, Void unused) {
+        String className = node.get("name");
+        var classType = "." + className;
+        var tempVar = names.getTemp();
+
+        var newObject = new CallInstruction(CallType.NEW,
+                new Operand(className, new ClassType(ElementType.OBJECTREF, className)), new ArrayList<>(),
+                OptUtils.toIrType(classType));
+        var init = new CallInstruction(CallType.invokespecial, new Operand(tempVar, OptUtils.toIrType(classType)),
+                methodNameLiteral("<init>"), new ArrayList<>(), OptUtils.toIrType(".V"), true);
+
+        var computation = new OllirCode()
+                .add(new AssignInstruction(new Operand(tempVar, OptUtils.toIrType(classType)),
+                        OptUtils.toIrType(classType), newObject))
+                .add(init);
+
+        return new OllirIrExprResult(new Operand(tempVar, OptUtils.toIrType(classType)), computation);
+    }
+
+    private OllirIrExprResult defaultVisit(JmmNode node, Void unused) {
+
+        for (var child : node.getChildren()) {
+            visit(child);
+        }
+
+        return OllirIrExprResult.empty();
+    }
+
+    private OllirIrExprResult visitArrayInit(JmmNode node, Void unused) {
+
+        String tempVar = names.getTemp();
+
+        JmmNode child = node.getChild(0);
+        int size = child.getNumChildren();
+
+        var computation = new OllirCode();
+        computation.add(assign(intArrayOperand(tempVar), INT_ARRAY_TYPE,
+                newArray(intLiteral(String.valueOf(size)), INT_ARRAY_TYPE)));
+
+        // Like the text generator, only the value of each element is used, not its computation
+        for (int i = 0; i < child.getNumChildren(); i++) {
+            var element = visit(child.getChild(i)).getCode();
+            computation.add(assign(intArrayAccess(tempVar, intLiteral(String.valueOf(i))), INT_TYPE, element));
+        }
+
+        return new OllirIrExprResult(intArrayOperand(tempVar), computation);
+    }
+
+    /**
+     * Operand 'this' as the object of a call or field access.
+     */
+    private Operand thisCaller() {
+        return new Operand("this", new ClassType(ElementType.THIS, table.getClassName()));
+    }
+
+    /**
+     * Converts an operand into the object of a virtual call, where 'this' has its own type.
+     */
+    private Operand toCaller(Operand operand) {
+        if (!operand.getName().equals("this")) {
+            return operand;
+        }
+
+        var className = operand.getType() instanceof ClassType classType ?
+                classType.getName() : table.getClassName();
+
+        return new Operand("this", new ClassType(ElementType.THIS, className));
+    }
+
+    static LiteralElement methodNameLiteral(String methodName) {
+        return new LiteralElement("\"" + methodName + "\"", new org.specs.comp.ollir.Type(ElementType.STRING));
+    }
+
+    static OperationType getOperationType(String operator) {
+        return switch (operator) {
+            case "+" -> OperationType.ADD;
+            case "-" -> OperationType.SUB;
+            case "*" -> OperationType.MUL;
+            case "/" -> OperationType.DIV;
+            case "&&" -> OperationType.ANDB;
+            case "||" -> OperationType.ORB;
+            case "<" -> OperationType.LTH;
+            case ">" -> OperationType.GTH;
+            case "<=" -> OperationType.LTE;
+            case ">=" -> OperationType.GTE;
+            case "==" -> OperationType.EQ;
+            case "!=" -> OperationType.NEQ;
+            case "&" -> OperationType.AND;
+            case "|" -> OperationType.OR;
+            case "^" -> OperationType.XOR;
+            default -> throw new RuntimeException("Unsupported operator '" + operator + "'");
+        };
+    }
+
+    static CondBranchInstruction condBranch(Element condition, String label) {
+        var branch = new SingleOpCondInstruction(new SingleOpInstruction(condition));
+        branch.setLabel(label);
+        return branch;
+    }
+
+    /**
+     * Assignment of a single value, the value can be an operand, a literal or another instruction.
+     */
+    static AssignInstruction assign(Element dest, String ollirType, Element value) {
+        return new AssignInstruction(dest, OptUtils.toIrType(ollirType), new SingleOpInstruction(value));
+    }
+
+    private static AssignInstruction assign(Element dest, String ollirType, Instruction value) {
+        return new AssignInstruction(dest, OptUtils.toIrType(ollirType), value);
+    }
+
+    private static CallInstruction newArray(Element size, String arrayType) {
+        var args = new ArrayList<Element>();
+        args.add(size);
+        return new CallInstruction(CallType.NEW, new Operand("array", new ArrayType()), args,
+                OptUtils.toIrType(arrayType));
+    }
+
+    private static ArrayOperand intArrayAccess(String arrayName, Element index) {
+        var indexes = new ArrayList<Element>();
+        indexes.add(index);
+        return new ArrayOperand(arrayName, OptUtils.toIrType(INT_TYPE), indexes);
+    }
+
+    private static Operand intOperand(String name) {
+        return new Operand(name, OptUtils.toIrType(INT_TYPE));
+    }
+
+    private static Operand intArrayOperand(String name) {
+        return new Operand(name, OptUtils.toIrType(INT_ARRAY_TYPE));
+    }
+
+    private static Operand boolOperand(String name) {
+        return new Operand(name, OptUtils.toIrType(BOOL_TYPE));
+    }
+
+    private static LiteralElement intLiteral(String value) {
+        return new LiteralElement(value, OptUtils.toIrType(INT_TYPE));
+    }
+
+    private static LiteralElement boolLiteral(String value) {
+        return new LiteralElement(value, OptUtils.toIrType(BOOL_TYPE));
+    }
+}
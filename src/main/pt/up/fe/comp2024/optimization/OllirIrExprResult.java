@@ -0,0 +1,42 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Element;
+
+/**
+ * Result of building the OLLIR objects of an expression: the element that holds its value, and the instructions
+ * that compute it.
+ */
+public class OllirIrExprResult {
+
+    private final Element code;
+    private final OllirCode computation;
+
+    public OllirIrExprResult(Element code, OllirCode computation) {
+        this.code = code;
+        this.computation = computation;
+    }
+
+    public OllirIrExprResult(Element code) {
+        this(code, new OllirCode());
+    }
+
+    public static OllirIrExprResult empty() {
+        return new OllirIrExprResult(null);
+    }
+
+    public OllirCode getComputation() {
+        return computation;
+    }
+
+    public Element getCode() {
+        return code;
+    }
+
+    @Override
+    public String toString() {
+        return "OllirIrExprResult{" +
+                "computation=" + computation +
+                ", code=" + code +
+                '}';
+    }
+}
@@ -0,0 +1,348 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.AJmmVisitor;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp2024.ast.NodeUtils;
+import pt.up.fe.comp2024.ast.TypeUtils;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+
+import java.util.ArrayList;
+
+import static pt.up.fe.comp2024.ast.Kind.*;
+
+/**
+ * Builds the OLLIR objects ({@link ClassUnit}, {@link Method}, instructions) of a program directly from the JmmNodes.
+ * <p>
+ * OLLIR text is not produced nor parsed, it is rendered from the class unit by {@link OllirPrinter} when needed.
+ * Statements return their instructions, and declarations add themselves to the class unit.
+ */
+public class OllirIrGeneratorVisitor extends AJmmVisitor<Void, OllirCode> {
+
+    private final SymbolTable table;
+
+    private final NamingContext names;
+
+    private final OllirIrExprGeneratorVisitor exprVisitor;
+
+    /**
+     * If while loops test their condition at the bottom, after a guard that skips the loop.
+     */
+    private final boolean rotateLoops;
+
+    private ClassUnit classUnit;
+
+    public OllirIrGeneratorVisitor(SymbolTable table) {
+        this(table, false);
+    }
+
+    public OllirIrGeneratorVisitor(SymbolTable table, boolean rotateLoops) {
+        this.table = table;
+        this.rotateLoops = rotateLoops;
+        names = new NamingContext();
+        exprVisitor = new OllirIrExprGeneratorVisitor(table, names);
+    }
+
+    /**
+     * Builds the class unit of the given program, with the variable tables of its methods.
+     */
+    public ClassUnit build(JmmNode root) {
+        classUnit = new ClassUnit();
+        visit(root);
+        classUnit.buildVarTables();
+
+        return classUnit;
+    }
+
+    @Override
+    protected void buildVisitor() {
+
+        addVisit(PROGRAM, this::visitProgram);
+        addVisit(IMPORT_DECL, this::visitImport);
+        addVisit(CLASS_DECL, this::visitClass);
+        addVisit(METHOD_DECL, this::visitMethodDecl);
+        addVisit(MAIN_METHOD_DECL, this::visitMainMethodDecl);
+        addVisit(RETURN_STMT, this::visitReturn);
+        addVisit(ASSIGN_STMT, this::visitAssignStmt);
+        addVisit(EXPRESSION_STMT, this::visitExpressionStmt);
+        addVisit(IF_STMT, this::visitIfStmt);
+        addVisit(BLOCK_STMT, this::visitBlockStmt);
+        addVisit(WHILE_STMT, this::visitWhileStmt);
+        setDefaultVisit(this::defaultVisit);
+    }
+
+    private OllirCode visitProgram(JmmNode node, Void unused) {
+
+        for (var child : node.getChildren()) {
+            visit(child);
+        }
+
+        return new OllirCode();
+    }
+
+    private OllirCode visitImport(JmmNode node, Void unused) {
+        classUnit.addImport(TypeUtils.convertImportName(node.get("name")));
+        return new OllirCode();
+    }
+
+    private OllirCode visitClass(JmmNode node, Void unused) {
+
+        classUnit.setClassName(table.getClassName());
+        classUnit.setSuperClass(node.hasAttribute("extendedClass") ? node.get("extendedClass") : "Object");
+
+        // class fields
+        for (JmmNode child : node.getChildren()) {
+            if (child.getKind().equals("VarDecl")) {
+                var param = child.getChild(0);
+
+                var field = new Field();
+                field.setFieldAccessModifier(AccessModifier.PUBLIC);
+                field.setFieldName(param.get("name"));
+                field.setFieldType(OptUtils.toIrType(param.getChild(0)));
+                classUnit.addField(field);
+            }
+        }
+
+        for (var child : node.getChildren()) {
+            visit(child);
+        }
+
+        classUnit.addMethod(buildConstructor());
+
+        return new OllirCode();
+    }
+
+    private OllirCode visitMethodDecl(JmmNode node, Void unused) {
+        names.startMethod();
+
+        var method = new Method(classUnit);
+        method.setMethodName(node.get("name"));
+
+        if (NodeUtils.getBooleanAttribute(node, "isPublic", "false")) {
+            method.setMethodAccessModifier(AccessModifier.PUBLIC);
+        }
+
+        // params, registers start at 1 since 0 is 'this'
+        int paramCount = 0;
+
+        for (JmmNode child : node.getChildren()) {
+            if (child.getKind().equals("Param")) {
+                paramCount++;
+
+                if (child.getChild(0).getKind().equals("VarArgsType")) {
+                    method.setVarargs(true);
+                }
+
+                var param = new Operand(child.get("name"), OptUtils.toIrType(child.getChild(0)));
+                param.setParamId(paramCount);
+                method.addParam(param);
+            }
+        }
+
+        // type
+        method.setReturnType(OptUtils.toIrType(node.getChild(0)));
+
+        // rest of its children stmts
+        var code = new OllirCode();
+        for (int i = paramCount + 1; i < node.getNumChildren(); i++) {
+            code.append(visit(node.getChild(i)));
+        }
+
+        code.addTo(method);
+        classUnit.addMethod(method);
+
+        return new OllirCode();
+    }
+
+    private OllirCode visitMainMethodDecl(JmmNode node, Void unused) {
+        names.startMethod();
+
+        var method = new Method(classUnit);
+        method.setMethodName("main");
+        method.setMethodAccessModifier(AccessModifier.PUBLIC);
+        method.setStaticMethod();
+
+        var args = new Operand("args", OptUtils.toIrType(".array.String"));
+        args.setParamId(0);
+        method.addParam(args);
+
+        method.setReturnType(OptUtils.toIrType(".V"));
+
+        // Assuming your main method might contain statements or expressions
+        var code = new OllirCode();
+        for (JmmNode child : node.getChildren()) {
+            code.append(visit(child));
+        }
+
+        var ret = new ReturnInstruction();
+        ret.setReturnType(OptUtils.toIrType(".V"));
+        code.add(ret);
+
+        code.addTo(method);
+        classUnit.addMethod(method);
+
+        return new OllirCode();
+    }
+
+    private OllirCode visitAssignStmt(JmmNode node, Void unused) {
+
+        JmmNode child = node.getChild(0);
+        boolean isArray = false;
+        if (child.getKind().equals("ArrayAccess")) {
+            isArray = true;
+            child = child.getChild(0);
+        }
+
+        boolean isFieldAssignment = true;
+
+        JmmNode parent = node.getParent();
+        while (!parent.getKind().equals("MethodDecl") && !parent.getKind().equals("MainMethodDecl")) {
+            parent = parent.getParent();
+        }
+
+        // Check if its local variable or a param
+        var resolved = JmmSymbolTable.resolve(table, parent.get("name"), child.get("name"));
+        if (resolved.isPresent() && !resolved.get().isField()) {
+            isFieldAssignment = false;
+        }
+
+        if (isArray) {
+            child = node.getChild(0);
+        }
+
+        var lhs = exprVisitor.visit(child);
+        var rhs = exprVisitor.visit(node.getChild(1));
+
+        var typeString = OptUtils.toOllirType(TypeUtils.getExprType(child, table));
+
+        var code = new OllirCode();
+
+        if (isFieldAssignment && !child.getKind().equals("ArrayAccess")) {
+            var object = new Operand("this", new ClassType(ElementType.THIS, table.getClassName()));
+            var field = new Operand(child.get("name"), OptUtils.toIrType(typeString));
+            code.append(rhs.getComputation())
+                    .add(new PutFieldInstruction(object, field, rhs.getCode(), OptUtils.toIrType(".V")));
+            return code;
+        }
+
+        // code to compute the children
+        code.append(lhs.getComputation()).append(rhs.getComputation());
+
+        // code to compute self
+        // statement has type of lhs
+        code.add(OllirIrExprGeneratorVisitor.assign(lhs.getCode(), typeString, rhs.getCode()));
+
+        return code;
+    }
+
+    private OllirCode visitReturn(JmmNode node, Void unused) {
+
+        String methodName = node.getAncestor(METHOD_DECL).map(method -> method.get("name")).orElseThrow();
+        var retType = table.getReturnType(methodName);
+
+        var code = new OllirCode();
+
+        ReturnInstruction ret;
+        if (node.getNumChildren() > 0) {
+            var expr = exprVisitor.visit(node.getChild(0));
+            code.append(expr.getComputation());
+            ret = new ReturnInstruction(expr.getCode());
+        } else {
+            ret = new ReturnInstruction();
+        }
+
+        ret.setReturnType(OptUtils.toIrType(retType));
+        code.add(ret);
+
+        return code;
+    }
+
+    private OllirCode visitExpressionStmt(JmmNode node, Void unused) {
+        var code = new OllirCode();
+
+        for (JmmNode child : node.getChildren()) {
+            code.append(exprVisitor.visit(child).getComputation());
+        }
+
+        return code;
+    }
+
+    private Method buildConstructor() {
+        var constructor = new Method(classUnit);
+        constructor.setConstructMethod();
+        constructor.setMethodName(table.getClassName());
+        constructor.setReturnType(OptUtils.toIrType(".V"));
+
+        var object = new Operand("this", new ClassType(ElementType.THIS, table.getClassName()));
+        constructor.addInstr(new CallInstruction(CallType.invokespecial, object,
+                OllirIrExprGeneratorVisitor.methodNameLiteral("<init>"), new ArrayList<>(), OptUtils.toIrType(".V"),
+                true));
+
+        return constructor;
+    }
+
+    private OllirCode visitIfStmt(JmmNode node, Void unused) {
+        var code = new OllirCode();
+
+        var thenStmt = node.getChild(1);
+        var elseStmt = node.getChild(2);
+        int ifThenNum = names.getNextIfThenNum();
+
+        code.append(exprVisitor.visitCondition(node.getChild(0), true, "if" + ifThenNum));
+        code.append(visit(elseStmt));
+        code.add(new GotoInstruction("endif" + ifThenNum));
+        code.label("if" + ifThenNum);
+        code.append(visit(thenStmt));
+        code.label("endif" + ifThenNum);
+
+        return code;
+    }
+
+    private OllirCode visitBlockStmt(JmmNode node, Void unused) {
+        var code = new OllirCode();
+
+        for (JmmNode child : node.getChildren()) {
+            code.append(visit(child));
+        }
+
+        return code;
+    }
+
+    private OllirCode visitWhileStmt(JmmNode node, Void unused) {
+        var code = new OllirCode();
+
+        var stmt = node.getChild(1);
+        int whileNum = names.getNextWhileNum();
+
+        // Each iteration runs only the conditional branch at the bottom
+        if (rotateLoops) {
+            code.append(exprVisitor.visitCondition(node.getChild(0), false, "whileEnd" + whileNum));
+            code.label("whileLoop" + whileNum);
+            code.append(visit(stmt));
+            code.label("whileCond" + whileNum);
+            code.append(exprVisitor.visitCondition(node.getChild(0), true, "whileLoop" + whileNum));
+            code.label("whileEnd" + whileNum);
+
+            return code;
+        }
+
+        code.label("whileCond" + whileNum);
+        code.append(exprVisitor.visitCondition(node.getChild(0), false, "whileEnd" + whileNum));
+        code.label("whileLoop" + whileNum);
+        code.append(visit(stmt));
+        code.add(new GotoInstruction("whileCond" + whileNum));
+        code.label("whileEnd" + whileNum);
+
+        return code;
+    }
+
+    private OllirCode defaultVisit(JmmNode node, Void unused) {
+
+        for (var child : node.getChildren()) {
+            visit(child);
+        }
+
+        return new OllirCode();
+    }
+}
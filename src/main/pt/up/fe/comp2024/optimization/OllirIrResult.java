@@ -0,0 +1,84 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.ClassUnit;
+import pt.up.fe.comp.jmm.analysis.JmmSemanticsResult;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.specs.util.SpecsCollections;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An OLLIR result whose class unit was built directly, instead of parsed from OLLIR code.
+ * <p>
+ * The OLLIR code is only rendered, by {@link OllirPrinter}, the first time it is requested, so it always matches the
+ * class unit as it was when the code was first requested.
+ */
+public class OllirIrResult extends OllirResult {
+
+    /**
+     * Every constructor of {@link OllirResult} parses OLLIR code, so the base class is given the smallest class there
+     * is. None of its state is used, since every accessor is overridden below.
+     */
+    private static final String PLACEHOLDER_CODE = "Placeholder {\n}\n";
+
+    private final ClassUnit ollirClass;
+    private final SymbolTable symbolTable;
+    private final List<Report> reports;
+    private final Map<String, String> config;
+
+    private String ollirCode;
+
+    public OllirIrResult(JmmSemanticsResult semanticsResult, ClassUnit ollirClass, List<Report> reports) {
+        super(PLACEHOLDER_CODE, semanticsResult.getConfig());
+
+        this.ollirClass = ollirClass;
+        this.symbolTable = semanticsResult.getSymbolTable();
+        this.reports = SpecsCollections.concat(semanticsResult.getReports(), reports);
+        this.config = semanticsResult.getConfig();
+    }
+
+    /**
+     * Wraps the class unit of another result, so that the code is rendered again after the class unit was changed in
+     * place, e.g. by the optimizations.
+     */
+    public OllirIrResult(OllirResult ollirResult) {
+        super(PLACEHOLDER_CODE, ollirResult.getConfig());
+
+        this.ollirClass = ollirResult.getOllirClass();
+        this.symbolTable = ollirResult.getSymbolTable();
+        this.reports = ollirResult.getReports();
+        this.config = ollirResult.getConfig();
+    }
+
+    @Override
+    public String getOllirCode() {
+        if (ollirCode == null) {
+            ollirCode = OllirPrinter.print(ollirClass);
+        }
+
+        return ollirCode;
+    }
+
+    @Override
+    public ClassUnit getOllirClass() {
+        return ollirClass;
+    }
+
+    @Override
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    @Override
+    public List<Report> getReports() {
+        return reports;
+    }
+
+    @Override
+    public Map<String, String> getConfig() {
+        return config;
+    }
+}
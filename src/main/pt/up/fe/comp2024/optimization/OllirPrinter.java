@@ -0,0 +1,264 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.*;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Renders a {@link ClassUnit} as OLLIR code.
+ * <p>
+ * Parsing the rendered code gives back an equivalent class unit.
+ */
+public class OllirPrinter {
+
+    private static final String NL = "\n";
+    private static final String END_STMT = ";\n";
+
+    private final Appendable out;
+
+    private OllirPrinter(Appendable out) {
+        this.out = out;
+    }
+
+    public static String print(ClassUnit classUnit) {
+        var code = new StringBuilder();
+
+        try {
+            print(classUnit, code);
+        } catch (IOException e) {
+            // StringBuilder does not throw
+            throw new UncheckedIOException(e);
+        }
+
+        return code.toString();
+    }
+
+    /**
+     * Appends the OLLIR code of the class to the given output, one instruction at a time.
+     */
+    public static void print(ClassUnit classUnit, Appendable out) throws IOException {
+        new OllirPrinter(out).printClass(classUnit);
+    }
+
+    private void printClass(ClassUnit classUnit) throws IOException {
+        for (var importName : classUnit.getImports()) {
+            out.append("import ").append(importName).append(END_STMT);
+        }
+
+        out.append(classUnit.getClassName());
+        if (classUnit.getSuperClass() != null) {
+            out.append(" extends ").append(classUnit.getSuperClass());
+        }
+        out.append(" {\n");
+
+        for (var field : classUnit.getFields()) {
+            out.append(".field ").append(getModifier(field.getFieldAccessModifier()));
+            if (field.isStaticField()) {
+                out.append("static ");
+            }
+            if (field.isFinalField()) {
+                out.append("final ");
+            }
+            out.append(field.getFieldName()).append(getType(field.getFieldType()));
+            if (field.isInitialized()) {
+                out.append(" :=").append(getType(field.getFieldType())).append(" ")
+                        .append(String.valueOf(field.getInitialValue()));
+            }
+            out.append(END_STMT);
+        }
+
+        out.append(NL);
+
+        for (var method : classUnit.getMethods()) {
+            out.append(NL);
+            printMethod(method);
+        }
+
+        out.append("}\n");
+    }
+
+    private void printMethod(Method method) throws IOException {
+        out.append(method.isConstructMethod() ? ".construct " : ".method ");
+        out.append(getModifier(method.getMethodAccessModifier()));
+        if (method.isStaticMethod()) {
+            out.append("static ");
+        }
+        if (method.isFinalMethod()) {
+            out.append("final ");
+        }
+        if (method.isVarargs()) {
+            out.append("varargs ");
+        }
+
+        var params = method.getParams().stream()
+                .map(this::getElement)
+                .collect(Collectors.joining(", "));
+        out.append(method.getMethodName()).append("(").append(params).append(")")
+                .append(getType(method.getReturnType())).append(" {\n");
+
+        for (var instruction : method.getInstructions()) {
+            for (var label : method.getLabels(instruction)) {
+                out.append(label).append(":\n");
+            }
+
+            printInstruction(instruction);
+            out.append(END_STMT);
+        }
+
+        out.append("}\n");
+    }
+
+    private void printInstruction(Instruction instruction) throws IOException {
+        if (instruction instanceof AssignInstruction assign) {
+            out.append(getElement(assign.getDest())).append(" :=").append(getType(assign.getTypeOfAssign()))
+                    .append(" ").append(getExpression(assign.getRhs()));
+        } else if (instruction instanceof PutFieldInstruction putField) {
+            out.append("putfield(").append(getCaller(putField.getObject())).append(", ")
+                    .append(getElement(putField.getField())).append(", ").append(getElement(putField.getValue()))
+                    .append(")").append(getType(putField.getFieldType()));
+        } else if (instruction instanceof GotoInstruction gotoInstruction) {
+            out.append("goto ").append(gotoInstruction.getLabel());
+        } else if (instruction instanceof CondBranchInstruction branch) {
+            out.append("if(").append(getExpression(branch.getCondition())).append(") goto ")
+                    .append(branch.getLabel());
+        } else if (instruction instanceof ReturnInstruction ret) {
+            out.append("ret").append(getType(ret.getReturnType()));
+            if (ret.hasReturnValue()) {
+                out.append(" ").append(getElement(ret.getOperand()));
+            }
+        } else {
+            out.append(getExpression(instruction));
+        }
+    }
+
+    /**
+     * Code of an instruction that produces a value, such as the right-hand side of an assignment.
+     */
+    private String getExpression(Instruction instruction) {
+        if (instruction instanceof SingleOpInstruction singleOp) {
+            return getElement(singleOp.getSingleOperand());
+        }
+
+        if (instruction instanceof BinaryOpInstruction binaryOp) {
+            return getElement(binaryOp.getLeftOperand()) + " " + getOperation(binaryOp.getOperation()) + " "
+                    + getElement(binaryOp.getRightOperand());
+        }
+
+        if (instruction instanceof UnaryOpInstruction unaryOp) {
+            return getOperation(unaryOp.getOperation()) + " " + getElement(unaryOp.getOperand());
+        }
+
+        if (instruction instanceof GetFieldInstruction getField) {
+            return "getfield(" + getCaller(getField.getObject()) + ", " + getElement(getField.getField()) + ")"
+                    + getType(getField.getFieldType());
+        }
+
+        if (instruction instanceof CallInstruction call) {
+            return getCall(call);
+        }
+
+        throw new RuntimeException("Unsupported OLLIR instruction " + instruction.getInstType());
+    }
+
+    private String getCall(CallInstruction call) {
+        var code = new StringBuilder();
+
+        code.append(switch (call.getInvocationType()) {
+            case NEW -> "new";
+            default -> call.getInvocationType().name();
+        });
+        code.append("(");
+
+        var caller = (Operand) call.getCaller();
+        code.append(switch (call.getInvocationType()) {
+            // Classes and arrays are referred to by name alone
+            case invokestatic, NEW -> caller.getName();
+            case arraylength -> getElement(caller);
+            default -> getCaller(caller);
+        });
+
+        call.getMethodNameTry().ifPresent(name -> code.append(", ").append(((LiteralElement) name).getLiteral()));
+
+        List<Element> args = call.getArguments();
+        for (var arg : args) {
+            code.append(", ").append(getElement(arg));
+        }
+
+        return code.append(")").append(getType(call.getReturnType())).toString();
+    }
+
+    private String getCaller(Operand caller) {
+        if (caller.getType() instanceof ClassType classType && classType.getTypeOfElement() == ElementType.THIS) {
+            return "this." + classType.getName();
+        }
+
+        return getElement(caller);
+    }
+
+    private String getElement(Element element) {
+        if (element instanceof LiteralElement literal) {
+            return literal.getLiteral() + getType(literal.getType());
+        }
+
+        var operand = (Operand) element;
+        var code = new StringBuilder(operand.getName());
+
+        if (operand instanceof ArrayOperand arrayOperand) {
+            for (var index : arrayOperand.getIndexOperands()) {
+                code.append("[").append(getElement(index)).append("]");
+            }
+        }
+
+        return code.append(getType(operand.getType())).toString();
+    }
+
+    private static String getOperation(Operation operation) {
+        var operator = switch (operation.getOpType()) {
+            case ADD -> "+";
+            case SUB -> "-";
+            case MUL -> "*";
+            case DIV -> "/";
+            case AND -> "&";
+            case OR -> "|";
+            case XOR -> "^";
+            case LTH -> "<";
+            case GTH -> ">";
+            case LTE -> "<=";
+            case GTE -> ">=";
+            case EQ -> "==";
+            case NEQ -> "!=";
+            case ANDB -> "&&";
+            case ORB -> "||";
+            case NOTB -> "!";
+            case NOT -> "~";
+            default -> throw new RuntimeException("Unsupported OLLIR operation " + operation.getOpType());
+        };
+
+        return operator + getType(operation.getTypeInfo());
+    }
+
+    private static String getType(Type type) {
+        if (type instanceof ArrayType arrayType) {
+            return ".array".repeat(arrayType.getNumDimensions()) + getType(arrayType.getElementType());
+        }
+
+        if (type instanceof ClassType classType) {
+            return "." + classType.getName();
+        }
+
+        return "." + switch (type.getTypeOfElement()) {
+            case INT32 -> "i32";
+            case BOOLEAN -> "bool";
+            case STRING -> "String";
+            case VOID -> "V";
+            default -> throw new RuntimeException("Unsupported OLLIR type " + type);
+        };
+    }
+
+    private static String getModifier(AccessModifier modifier) {
+        return modifier == AccessModifier.DEFAULT ? "" : modifier.name().toLowerCase() + " ";
+    }
+}
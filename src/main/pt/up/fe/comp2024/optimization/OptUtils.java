@@ -1,25 +1,14 @@
 package pt.up.fe.comp2024.optimization;
 
+import org.specs.comp.ollir.*;
 import pt.up.fe.comp.jmm.analysis.table.Type;
 import pt.up.fe.comp.jmm.ast.JmmNode;
 
+import java.util.ArrayList;
+
 import static pt.up.fe.comp2024.ast.Kind.*;
 
 public class OptUtils {
-    private static int tempNumber = -1;
-    private static int ifThenNumber = -1;
-    private static int whileNumber = -1;
-
-    public static String getTemp() { return getTemp("tmp"); }
-
-    public static String getTemp(String prefix) { return prefix + getNextTempNum(); }
-
-    public static int getNextTempNum() { return ++tempNumber; }
-
-    public static int getNextIfThenNum() { return ++ifThenNumber; }
-
-    public static int getNextWhileNum() { return ++whileNumber; }
-
     public static String toOllirType(JmmNode node) {
 
         // This logic had to be changed since we are treating Types in a different way in the Grammar!
@@ -59,4 +48,156 @@ public class OptUtils {
         };
     }
 
+    public static org.specs.comp.ollir.Type toIrType(JmmNode node) {
+        return toIrType(toOllirType(node));
+    }
+
+    public static org.specs.comp.ollir.Type toIrType(Type type) {
+        return toIrType(toOllirType(type));
+    }
+
+    /**
+     * Converts an OLLIR type suffix, such as ".i32" or ".array.String", into the type object the OLLIR parser would
+     * build for it.
+     */
+    public static org.specs.comp.ollir.Type toIrType(String ollirType) {
+        var parts = ollirType.substring(1).split("\\.");
+
+        int dimensions = 0;
+        while (dimensions < parts.length && parts[dimensions].equals("array")) {
+            dimensions++;
+        }
+
+        if (dimensions != parts.length - 1) {
+            throw new RuntimeException("Invalid OLLIR type '" + ollirType + "'");
+        }
+
+        var elementName = parts[dimensions];
+        var elementType = switch (elementName) {
+            case "i32" -> ElementType.INT32;
+            case "bool" -> ElementType.BOOLEAN;
+            case "String" -> ElementType.STRING;
+            case "V" -> ElementType.VOID;
+            default -> ElementType.OBJECTREF;
+        };
+
+        if (dimensions > 0) {
+            var arrayType = new ArrayType();
+            arrayType.setNumDimensions(dimensions);
+            arrayType.setTypeOfElements(elementType);
+            if (elementType == ElementType.OBJECTREF || elementType == ElementType.STRING) {
+                arrayType.setElementClass(elementName);
+            }
+            return arrayType;
+        }
+
+        if (elementType == ElementType.OBJECTREF) {
+            return new ClassType(elementType, elementName);
+        }
+
+        return new org.specs.comp.ollir.Type(elementType);
+    }
+
+    /**
+     * Comparison operator that holds exactly when the given one does not, e.g. "&gt;=" for "&lt;".
+     */
+    public static String negateComparison(String operator) {
+        return switch (operator) {
+            case "<" -> ">=";
+            case ">=" -> "<";
+            case ">" -> "<=";
+            case "<=" -> ">";
+            case "==" -> "!=";
+            case "!=" -> "==";
+            default -> throw new RuntimeException("Unsupported comparison '" + operator + "'");
+        };
+    }
+
+    /**
+     * Checks if computing the value can neither throw nor change the state of the program. Calls, accesses to array
+     * elements and divisions that may be by zero are not.
+     */
+    public static boolean hasNoSideEffects(Instruction instruction) {
+        if (instruction instanceof SingleOpInstruction singleOp) {
+            return !(singleOp.getSingleOperand() instanceof ArrayOperand);
+        }
+
+        if (instruction instanceof BinaryOpInstruction binaryOp) {
+            if (binaryOp.getLeftOperand() instanceof ArrayOperand || binaryOp.getRightOperand() instanceof ArrayOperand) {
+                return false;
+            }
+
+            if (binaryOp.getOperation().getOpType() == OperationType.DIV) {
+                var divisor = getIntLiteral(binaryOp.getRightOperand());
+                return divisor != null && divisor != 0;
+            }
+
+            return true;
+        }
+
+        if (instruction instanceof UnaryOpInstruction unaryOp) {
+            return !(unaryOp.getOperand() instanceof ArrayOperand);
+        }
+
+        // Reading a field of 'this' never fails
+        if (instruction instanceof GetFieldInstruction getField) {
+            return getField.getObject().getName().equals("this");
+        }
+
+        return false;
+    }
+
+    /**
+     * Value of an integer or boolean literal, or null if the element is not one.
+     */
+    public static Integer getIntLiteral(Element element) {
+        if (!(element instanceof LiteralElement literal)) {
+            return null;
+        }
+
+        try {
+            return Integer.parseInt(literal.getLiteral());
+        } catch (NumberFormatException e) {
+            // Strings, such as method names, are not values
+            return null;
+        }
+    }
+
+    /**
+     * Removes an instruction of a method, moving its labels to the instruction after it.
+     */
+    public static void removeInstruction(Method method, int index) {
+        var instructions = method.getInstructions();
+        var next = index + 1 < instructions.size() ? instructions.get(index + 1) : null;
+
+        moveLabels(method, instructions.get(index), next);
+        instructions.remove(index);
+    }
+
+    /**
+     * Replaces an instruction of a method, keeping its labels.
+     */
+    public static void replaceInstruction(Method method, int index, Instruction instruction) {
+        moveLabels(method, method.getInstructions().get(index), instruction);
+        method.getInstructions().set(index, instruction);
+    }
+
+    /**
+     * Points the labels of an instruction to another one, or removes them if there is none.
+     */
+    private static void moveLabels(Method method, Instruction from, Instruction to) {
+        var labels = method.getLabels();
+
+        for (var label : new ArrayList<>(labels.keySet())) {
+            if (labels.get(label) != from) {
+                continue;
+            }
+
+            if (to != null) {
+                labels.put(label, to);
+            } else {
+                labels.remove(label);
+            }
+        }
+    }
 }
@@ -0,0 +1,183 @@
+package pt.up.fe.comp2024.optimization;
+
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.Operand;
+import org.specs.comp.ollir.VarScope;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Assigns the JVM registers of the local variables of a method, by coloring the interference graph built from
+ * their liveness.
+ * <p>
+ * 'this' and the parameters keep the registers given by OLLIR. A local variable may reuse the register of a
+ * parameter that is no longer live, but never the register of 'this'.
+ */
+public class RegisterAllocator {
+
+    private final Method method;
+
+    /**
+     * Local variables that interfere with each local variable.
+     */
+    private final Map<String, Set<String>> interference;
+
+    /**
+     * Registers of 'this' and of the parameters that each local variable cannot use.
+     */
+    private final Map<String, Set<Integer>> reserved;
+
+    private final int numFixedRegisters;
+
+    public RegisterAllocator(Method method) {
+        this.method = method;
+        this.interference = new HashMap<>();
+        this.reserved = new HashMap<>();
+        this.numFixedRegisters = (method.isStaticMethod() ? 0 : 1) + method.getParams().size();
+
+        buildInterferenceGraph(Liveness.analyze(method));
+    }
+
+    /**
+     * Assigns a register to each local variable, using as few registers as possible.
+     *
+     * @param maxRegisters the maximum number of registers of the method, including 'this' and the parameters, or 0
+     *                     for no limit
+     * @return the number of registers the method needs, which is larger than the maximum when the variables do not
+     * fit, in which case the registers of the method are left unchanged
+     */
+    public int allocate(int maxRegisters) {
+        var colors = color();
+
+        int numRegisters = numFixedRegisters;
+        for (int register : colors.values()) {
+            numRegisters = Math.max(numRegisters, register + 1);
+        }
+
+        if (maxRegisters > 0 && numRegisters > maxRegisters) {
+            return numRegisters;
+        }
+
+        var varTable = method.getVarTable();
+        colors.forEach((variable, register) -> varTable.get(variable).setVirtualReg(register));
+
+        return numRegisters;
+    }
+
+    private void buildInterferenceGraph(Liveness liveness) {
+        var varTable = method.getVarTable();
+
+        Map<String, Integer> paramRegisters = new HashMap<>();
+        for (var param : method.getParams()) {
+            var name = ((Operand) param).getName();
+            paramRegisters.put(name, varTable.get(name).getVirtualReg());
+        }
+
+        varTable.forEach((name, descriptor) -> {
+            if (descriptor.getScope() == VarScope.LOCAL && !name.equals("this")) {
+                interference.put(name, new HashSet<>());
+                reserved.put(name, new HashSet<>(method.isStaticMethod() ? Set.of() : Set.of(0)));
+            }
+        });
+
+        // Parameters are written when the method starts
+        Set<String> liveAtEntry = liveness.getNumInstructions() > 0 ? liveness.getLiveIn(0) : Set.of();
+        for (var name : liveAtEntry) {
+            paramRegisters.values().forEach(register -> reserve(name, register));
+        }
+
+        // A variable interferes with everything live after the instructions that write it
+        for (int i = 0; i < liveness.getNumInstructions(); i++) {
+            for (var def : liveness.getDefs(i)) {
+                for (var live : liveness.getLiveOut(i)) {
+                    if (live.equals(def)) {
+                        continue;
+                    }
+
+                    addInterference(def, live, paramRegisters);
+                }
+            }
+        }
+    }
+
+    private void addInterference(String variable, String other, Map<String, Integer> paramRegisters) {
+        var variableParam = paramRegisters.get(variable);
+        var otherParam = paramRegisters.get(other);
+
+        if (variableParam != null && otherParam != null) {
+            return;
+        }
+
+        if (variableParam != null) {
+            reserve(other, variableParam);
+        } else if (otherParam != null) {
+            reserve(variable, otherParam);
+        } else {
+            interference.get(variable).add(other);
+            interference.get(other).add(variable);
+        }
+    }
+
+    private void reserve(String variable, int register) {
+        var registers = reserved.get(variable);
+
+        // Parameters are not local variables
+        if (registers != null) {
+            registers.add(register);
+        }
+    }
+
+    /**
+     * Colors the interference graph, removing the variable with the fewest neighbors first and then assigning each
+     * variable the lowest register free among its neighbors, in the reverse order of removal.
+     *
+     * @return the register of each local variable
+     */
+    private Map<String, Integer> color() {
+        var stack = new ArrayDeque<String>();
+        Map<String, Integer> degrees = new HashMap<>();
+        interference.forEach((variable, neighbors) -> degrees.put(variable, neighbors.size()));
+
+        // Ties are broken by name, so that the allocation does not depend on the order of the var table
+        while (!degrees.isEmpty()) {
+            String next = null;
+            for (var entry : degrees.entrySet()) {
+                if (next == null || entry.getValue() < degrees.get(next)
+                        || entry.getValue().equals(degrees.get(next)) && entry.getKey().compareTo(next) < 0) {
+                    next = entry.getKey();
+                }
+            }
+
+            degrees.remove(next);
+            for (var neighbor : interference.get(next)) {
+                degrees.computeIfPresent(neighbor, (variable, degree) -> degree - 1);
+            }
+            stack.push(next);
+        }
+
+        Map<String, Integer> colors = new HashMap<>();
+        while (!stack.isEmpty()) {
+            var variable = stack.pop();
+
+            Set<Integer> taken = new HashSet<>(reserved.get(variable));
+            for (var neighbor : interference.get(variable)) {
+                if (colors.containsKey(neighbor)) {
+                    taken.add(colors.get(neighbor));
+                }
+            }
+
+            int register = 0;
+            while (taken.contains(register)) {
+                register++;
+            }
+
+            colors.put(variable, register);
+        }
+
+        return colors;
+    }
+}
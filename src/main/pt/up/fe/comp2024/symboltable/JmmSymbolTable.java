@@ -3,10 +3,13 @@ package pt.up.fe.comp2024.symboltable;
 import pt.up.fe.comp.jmm.analysis.table.Symbol;
 import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
 import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp2024.ast.ExprTypes;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 public class JmmSymbolTable implements SymbolTable {
 
@@ -19,6 +22,18 @@ public class JmmSymbolTable implements SymbolTable {
     private final List<String> imports;
     private final List<Symbol> fields;
 
+    // Keyed by the nodes of the AST, so it is not serialized with the table, and created again when read back
+    private transient volatile ExprTypes exprTypes;
+
+    /**
+     * Symbols of the fields, and of each method with its fields, params and locals, by name.
+     */
+    private record Scopes(Map<String, ScopedSymbol> fields, Map<String, Map<String, ScopedSymbol>> methods) {
+    }
+
+    // Built on the first lookup, so that tables read back from the compilation cache have it too
+    private transient volatile Scopes scopes;
+
     public JmmSymbolTable(String className,
                           String extendedClass,
                           List<String> methods,
@@ -71,4 +86,92 @@ public class JmmSymbolTable implements SymbolTable {
         return Collections.unmodifiableList(locals.get(methodSignature));
     }
 
+    /**
+     * Types of the expressions of the program the table was built from.
+     */
+    public ExprTypes getExprTypes() {
+        var exprTypes = this.exprTypes;
+        if (exprTypes != null) {
+            return exprTypes;
+        }
+
+        // Methods analysed concurrently must share the same types
+        synchronized (this) {
+            if (this.exprTypes == null) {
+                this.exprTypes = new ExprTypes();
+            }
+
+            return this.exprTypes;
+        }
+    }
+
+    /**
+     * Resolves a variable name in a method, as a local, a param or a field, in this order.
+     * <p>
+     * Looks the name up in an index of the method, instead of scanning its locals, params and fields.
+     */
+    public Optional<ScopedSymbol> resolve(String methodSignature, String name) {
+        var scopes = getScopes();
+        var scope = scopes.methods().getOrDefault(methodSignature, scopes.fields());
+        return Optional.ofNullable(scope.get(name));
+    }
+
+    /**
+     * Resolves a variable name in a method of any symbol table, with the index of a {@link JmmSymbolTable}.
+     */
+    public static Optional<ScopedSymbol> resolve(SymbolTable table, String methodSignature, String name) {
+        if (table instanceof JmmSymbolTable jmmTable) {
+            return jmmTable.resolve(methodSignature, name);
+        }
+
+        var scope = new HashMap<String, ScopedSymbol>();
+        if (table.getMethods().contains(methodSignature)) {
+            addAll(scope, table.getLocalVariables(methodSignature), ScopedSymbol.Scope.LOCAL);
+            addAll(scope, table.getParameters(methodSignature), ScopedSymbol.Scope.PARAM);
+        }
+        addAll(scope, table.getFields(), ScopedSymbol.Scope.FIELD);
+
+        return Optional.ofNullable(scope.get(name));
+    }
+
+    private Scopes getScopes() {
+        var scopes = this.scopes;
+        if (scopes != null) {
+            return scopes;
+        }
+
+        // Tables are shared by the methods analysed concurrently, and building the index twice is harmless
+        Map<String, ScopedSymbol> fieldScope = new HashMap<>(capacity(fields.size()));
+        addAll(fieldScope, fields, ScopedSymbol.Scope.FIELD);
+
+        Map<String, Map<String, ScopedSymbol>> methodScopes = new HashMap<>(capacity(methods.size()));
+        for (var method : methods) {
+            var methodLocals = locals.getOrDefault(method, List.of());
+            var methodParams = params.getOrDefault(method, List.of());
+
+            Map<String, ScopedSymbol> scope =
+                    new HashMap<>(capacity(methodLocals.size() + methodParams.size() + fields.size()));
+            // The first symbol of a name is kept, so locals shadow params and params shadow fields
+            addAll(scope, methodLocals, ScopedSymbol.Scope.LOCAL);
+            addAll(scope, methodParams, ScopedSymbol.Scope.PARAM);
+            fieldScope.forEach(scope::putIfAbsent);
+
+            methodScopes.put(method, Collections.unmodifiableMap(scope));
+        }
+
+        scopes = new Scopes(Collections.unmodifiableMap(fieldScope), Collections.unmodifiableMap(methodScopes));
+        this.scopes = scopes;
+
+        return scopes;
+    }
+
+    private static void addAll(Map<String, ScopedSymbol> scope, List<Symbol> symbols, ScopedSymbol.Scope kind) {
+        for (var symbol : symbols) {
+            scope.putIfAbsent(symbol.getName(), new ScopedSymbol(symbol, kind));
+        }
+    }
+
+    private static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
 }
@@ -8,13 +8,34 @@ import pt.up.fe.comp2024.ast.TypeUtils;
 import pt.up.fe.specs.util.SpecsCheck;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import static pt.up.fe.comp2024.ast.Kind.*;
 
+/**
+ * Builds the symbol table of a program in a single walk over the members of its class.
+ * <p>
+ * Methods, return types, params, locals and fields are collected together as each member is found, into collections
+ * presized from the number of children, and the table is given unmodifiable views of them. Types are kept as the
+ * builder found them, including the null type of a return type that cannot be resolved, which the analysis reports.
+ */
 public class JmmSymbolTableBuilder {
 
+    private final List<String> methods;
+    private final List<String> mainMethods;
+    private final Map<String, Type> returnTypes;
+    private final Map<String, List<Symbol>> params;
+    private final Map<String, List<Symbol>> locals;
+    private final List<Symbol> fields;
+
+    private JmmSymbolTableBuilder(int numMembers) {
+        this.methods = new ArrayList<>(numMembers);
+        this.mainMethods = new ArrayList<>(1);
+        this.returnTypes = new HashMap<>(capacity(numMembers));
+        this.params = new HashMap<>(capacity(numMembers));
+        this.locals = new HashMap<>(capacity(numMembers));
+        this.fields = new ArrayList<>(numMembers);
+    }
+
     public static JmmSymbolTable build(JmmNode root) {
         var imports = buildImports(root);
 
@@ -23,13 +44,13 @@ public class JmmSymbolTableBuilder {
         String className = classDecl.get("name");
 
         var extendedClass = buildExtendedClass(classDecl);
-        var methods = buildMethods(classDecl);
-        var returnTypes = buildReturnTypes(classDecl);
-        var params = buildParams(classDecl);
-        var locals = buildLocals(classDecl);
-        var fields = buildFields(classDecl);
 
-        return new JmmSymbolTable(className, extendedClass, methods, returnTypes, params, locals, imports, fields);
+        var builder = new JmmSymbolTableBuilder(classDecl.getNumChildren());
+        for (var member : classDecl.getChildren()) {
+            builder.addMember(member);
+        }
+
+        return builder.toTable(className, extendedClass, imports);
     }
 
     private static List<String> buildImports(JmmNode node) {
@@ -37,16 +58,16 @@ public class JmmSymbolTableBuilder {
         // This is actually not a list, it is a String, so it has to be formatted in this function
         // For example [foo, bar] needs to become foo.bar
 
-        List<String> imports = new ArrayList<>();
-        List<JmmNode> children = node.getChildren(IMPORT_DECL);
+        List<String> imports = new ArrayList<>(node.getNumChildren());
 
-        for (JmmNode importDecl : children) {
-            String rawNames = importDecl.get("name");
-            String formattedName = TypeUtils.convertImportName(rawNames);
-            imports.add(formattedName);
+        for (JmmNode importDecl : node.getChildren()) {
+            if (IMPORT_DECL.check(importDecl)) {
+                String rawNames = importDecl.get("name");
+                imports.add(TypeUtils.convertImportName(rawNames));
+            }
         }
 
-        return imports;
+        return Collections.unmodifiableList(imports);
     }
 
     private static String buildExtendedClass(JmmNode node){
@@ -54,104 +75,93 @@ public class JmmSymbolTableBuilder {
         return null;
     }
 
-    private static List<Symbol> buildFields(JmmNode classDecl) {
-        List<Symbol> fields = new ArrayList<>();
-
-        // Iterate over all children of the class declaration
-        for (JmmNode varDecl : classDecl.getChildren()) {
-            // Check if the child is a variable declaration
-            if (varDecl.getKind().equals("VarDecl")) {
-                // Get the name and type of the variable
-                String fieldName = varDecl.getJmmChild(0).get("name");
-                Type fieldType = TypeUtils.getExprType(varDecl.getJmmChild(0).getJmmChild(0), null);
-
-                Symbol fieldSymbol = new Symbol(fieldType, fieldName);
-
-                // Add the constructed Symbol to the fields list
-                fields.add(fieldSymbol);
-            }
+    private void addMember(JmmNode member) {
+        if (VAR_DECL.check(member)) {
+            addField(member);
+        } else if (METHOD_DECL.check(member)) {
+            addMethod(member);
+        } else if (MAIN_METHOD_DECL.check(member)) {
+            addMainMethod(member);
         }
-
-        return fields;
     }
 
-    private static Map<String, Type> buildReturnTypes(JmmNode classDecl) {
+    private void addField(JmmNode varDecl) {
+        // Get the name and type of the variable
+        JmmNode field = varDecl.getJmmChild(0);
+        Type fieldType = TypeUtils.getExprType(field.getJmmChild(0), null);
 
-        Map<String, Type> map = new HashMap<>();
-
-        for (JmmNode method : classDecl.getChildren()) {
-            if (method.getKind().equals("MethodDecl")) {
-                // get the last child, assuming that return is always last child
-                Type returnType = TypeUtils.getExprType(method.getChild(0), null);
-                map.put(method.get("name"), returnType);
-            }
-            else if (method.getKind().equals("MainMethodDecl")) {
-                map.put(method.get("name"), new Type("void", false));
-            }
-        }
-
-        return map;
+        fields.add(new Symbol(fieldType, field.get("name")));
     }
 
-    private static Map<String, List<Symbol>> buildParams(JmmNode classDecl) {
-
-        Map<String, List<Symbol>> map = new HashMap<>();
-
-        for (JmmNode method : classDecl.getChildren()) {
-            if (method.getKind().equals("MethodDecl")) {
-                String methodName = method.get("name");
-                List<Symbol> paramsList = map.getOrDefault(methodName, new ArrayList<>());
-                for (JmmNode paramDecl : method.getChildren(PARAM)) {
-                    Type paramType = TypeUtils.getExprType(paramDecl.getJmmChild(0), null);
-                    paramsList.add(new Symbol(paramType, paramDecl.get("name")));
-                }
-                map.put(methodName, paramsList);
-            }
-            else if (method.getKind().equals("MainMethodDecl")) {
-                // Main Method can be done hard-coded, assuming no parameters for main
-                map.put("main", new ArrayList<>());
+    private void addMethod(JmmNode method) {
+        String methodName = method.get("name");
+        methods.add(methodName);
+
+        // The return type is always the first child
+        returnTypes.put(methodName, TypeUtils.getExprType(method.getJmmChild(0), null));
+
+        List<Symbol> methodParams = new ArrayList<>(method.getNumChildren());
+        List<Symbol> methodLocals = new ArrayList<>(method.getNumChildren());
+        for (JmmNode child : method.getChildren()) {
+            if (PARAM.check(child)) {
+                Type paramType = TypeUtils.getExprType(child.getJmmChild(0), null);
+                methodParams.add(new Symbol(paramType, child.get("name")));
+            } else if (VAR_DECL.check(child)) {
+                methodLocals.add(getLocal(child));
             }
         }
 
-        return map;
+        // Params of methods with the same name are kept together, for the analysis to report the duplicate
+        params.computeIfAbsent(methodName, name -> new ArrayList<>(methodParams.size())).addAll(methodParams);
+        locals.put(methodName, methodLocals);
     }
 
-    private static Map<String, List<Symbol>> buildLocals(JmmNode classDecl) {
+    private void addMainMethod(JmmNode mainMethod) {
+        String methodName = mainMethod.get("name");
+        mainMethods.add(methodName);
+
+        returnTypes.put(methodName, new Type("void", false));
 
-        Map<String, List<Symbol>> map = new HashMap<>();
+        // Main Method can be done hard-coded, assuming no parameters for main
+        params.put("main", new ArrayList<>(0));
 
-        List<JmmNode> methodDecls = classDecl.getChildren();
-        for (JmmNode method : methodDecls) {
-            if (method.getKind().equals("MethodDecl") || method.getKind().equals("MainMethodDecl")) {
-                map.put(method.get("name"), getLocalsList(method));
+        List<Symbol> methodLocals = new ArrayList<>(mainMethod.getNumChildren());
+        for (JmmNode child : mainMethod.getChildren()) {
+            if (VAR_DECL.check(child)) {
+                methodLocals.add(getLocal(child));
             }
         }
-
-        return map;
+        locals.put(methodName, methodLocals);
     }
 
-    private static List<String> buildMethods(JmmNode classDecl) {
-
-        return Stream.concat(
-                classDecl.getChildren(METHOD_DECL).stream(),
-                classDecl.getChildren(MAIN_METHOD_DECL).stream())
-                .map(method -> method.get("name"))
-                .collect(Collectors.toList());
+    private static Symbol getLocal(JmmNode varDecl) {
+        JmmNode local = varDecl.getChild(0);
+        Type localType = TypeUtils.getExprType(local.getChild(0), null);
+        return new Symbol(localType, local.get("name"));
     }
 
-    private static List<Symbol> getLocalsList(JmmNode methodDecl) {
-        List<Symbol> localsList = new ArrayList<>();
-        List<JmmNode> varDecls = methodDecl.getChildren(VAR_DECL);
-
-        // iterate the var declarations
-        for (JmmNode varDecl : varDecls) {
-            JmmNode param = varDecl.getChild(0);
-            Type paramType = TypeUtils.getExprType(param.getChild(0), null);
-            Symbol varSymbol = new Symbol(paramType, param.get("name"));
-            localsList.add(varSymbol);
-        }
+    private JmmSymbolTable toTable(String className, String extendedClass, List<String> imports) {
+        // Main methods are listed after the other methods
+        List<String> allMethods = new ArrayList<>(methods.size() + mainMethods.size());
+        allMethods.addAll(methods);
+        allMethods.addAll(mainMethods);
+
+        return new JmmSymbolTable(className,
+                extendedClass,
+                Collections.unmodifiableList(allMethods),
+                Collections.unmodifiableMap(returnTypes),
+                unmodifiable(params),
+                unmodifiable(locals),
+                imports,
+                Collections.unmodifiableList(fields));
+    }
 
-        return localsList;
+    private static Map<String, List<Symbol>> unmodifiable(Map<String, List<Symbol>> symbols) {
+        symbols.replaceAll((method, methodSymbols) -> Collections.unmodifiableList(methodSymbols));
+        return Collections.unmodifiableMap(symbols);
     }
 
+    private static int capacity(int size) {
+        return (int) (size / 0.75f) + 1;
+    }
 }
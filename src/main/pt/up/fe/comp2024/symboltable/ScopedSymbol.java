@@ -0,0 +1,27 @@
+package pt.up.fe.comp2024.symboltable;
+
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+
+/**
+ * A symbol that a name resolves to, in a method, with the scope it was declared in.
+ */
+public record ScopedSymbol(Symbol symbol, Scope scope) {
+
+    public enum Scope {
+        LOCAL,
+        PARAM,
+        FIELD
+    }
+
+    public boolean isLocal() {
+        return scope == Scope.LOCAL;
+    }
+
+    public boolean isParam() {
+        return scope == Scope.PARAM;
+    }
+
+    public boolean isField() {
+        return scope == Scope.FIELD;
+    }
+}
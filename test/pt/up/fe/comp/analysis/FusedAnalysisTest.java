@@ -0,0 +1,90 @@
+package pt.up.fe.comp.analysis;
+
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.ast.JmmNode;
+import pt.up.fe.comp.jmm.report.Report;
+import pt.up.fe.comp2024.analysis.AnalysisPass;
+import pt.up.fe.comp2024.analysis.FusedAnalysis;
+import pt.up.fe.comp2024.analysis.passes.OtherSemantics;
+import pt.up.fe.comp2024.analysis.passes.UndeclaredVariable;
+import pt.up.fe.comp2024.ast.ExprTypes;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+/**
+ * The fused analysis must report the same errors, in the same order, as running each pass on its own.
+ */
+public class FusedAnalysisTest {
+
+    static final List<Supplier<AnalysisPass>> PASSES = List.of(UndeclaredVariable::new, OtherSemantics::new);
+
+    static final List<String> PROGRAMS = List.of(
+            "analysis/ErrorsInManyMethods.jmm",
+            "cp2/semanticanalysis/IncompatibleArguments.jmm",
+            "cp2/semanticanalysis/MemberAccessWrong.jmm",
+            "cp2/semanticanalysis/ObjectAssignmentPassImports.jmm",
+            "pipeline/WhileLoop.jmm");
+
+    /**
+     * Lines of the errors of 'ErrorsInManyMethods.jmm', one in each member
+     */
+    static final int[] ERROR_LINES = {10, 18, 23, 32, 37, 44};
+
+    record Program(JmmNode root, SymbolTable table) {
+
+        static Program parse(String resource) {
+            var root = TestUtils.parse(SpecsIo.getResource("pt/up/fe/comp/" + resource)).getRootNode();
+            var table = JmmSymbolTableBuilder.build(root);
+            ExprTypes.annotate(root, table);
+
+            return new Program(root, table);
+        }
+    }
+
+    static List<String> toStrings(List<Report> reports) {
+        return reports.stream().map(Report::toString).collect(Collectors.toList());
+    }
+
+    static List<String> analyzeFused(Program program) {
+        var passes = PASSES.stream().map(Supplier::get).collect(Collectors.toList());
+        return toStrings(new FusedAnalysis(passes).analyze(program.root(), program.table()));
+    }
+
+    static void assertErrorInEachLine(List<String> reports) {
+        for (int line : ERROR_LINES) {
+            assertTrue("Expected an error in line " + line + ": " + reports,
+                    reports.stream().anyMatch(report -> report.contains("line " + line + ",")));
+        }
+    }
+
+    private static List<String> analyzeEachPass(Program program) {
+        List<Report> reports = new ArrayList<>();
+        for (var pass : PASSES) {
+            reports.addAll(pass.get().analyze(program.root(), program.table()));
+        }
+
+        return toStrings(reports);
+    }
+
+    @Test
+    public void reportsErrorsOfEveryMethod() {
+        assertErrorInEachLine(analyzeFused(Program.parse("analysis/ErrorsInManyMethods.jmm")));
+    }
+
+    @Test
+    public void matchesEachPass() {
+        for (var resource : PROGRAMS) {
+            var program = Program.parse(resource);
+            assertEquals(resource, analyzeEachPass(program), analyzeFused(program));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package pt.up.fe.comp.analysis;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import pt.up.fe.comp.analysis.FusedAnalysisTest.Program;
+import pt.up.fe.comp2024.StageProfiler;
+import pt.up.fe.comp2024.analysis.ParallelAnalysis;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Analysing the methods concurrently must report the same errors, in the same order, as the fused analysis.
+ */
+public class ParallelAnalysisTest {
+
+    private static ForkJoinPool pool;
+
+    @BeforeClass
+    public static void createPool() {
+        pool = new ForkJoinPool(4);
+    }
+
+    @AfterClass
+    public static void shutdownPool() {
+        pool.shutdown();
+    }
+
+    private static List<String> analyzeParallel(Program program) {
+        return FusedAnalysisTest.toStrings(new ParallelAnalysis(FusedAnalysisTest.PASSES, pool)
+                .analyze(program.root(), program.table()));
+    }
+
+    @Test
+    public void reportsErrorsOfEveryMethod() {
+        FusedAnalysisTest.assertErrorInEachLine(analyzeParallel(Program.parse("analysis/ErrorsInManyMethods.jmm")));
+    }
+
+    @Test
+    public void matchesFused() {
+        for (var resource : FusedAnalysisTest.PROGRAMS) {
+            var program = Program.parse(resource);
+            assertEquals(resource, FusedAnalysisTest.analyzeFused(program), analyzeParallel(program));
+        }
+    }
+
+    @Test
+    public void deterministic() {
+        var program = Program.parse("analysis/ErrorsInManyMethods.jmm");
+        var expected = analyzeParallel(program);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(expected, analyzeParallel(program));
+        }
+    }
+
+    /**
+     * Allocations of the tasks that run in the pool are added to the stage that submitted them
+     */
+    @Test
+    public void profilesWorkOfPool() {
+        var profiler = new StageProfiler("test");
+        int size = 4 * 1024 * 1024;
+
+        profiler.measure("stage", () -> pool.submit(() -> profiler.measureTask(() -> new byte[size])).join());
+
+        var measurement = profiler.getMeasurements().get(0);
+        if (measurement.allocatedBytes() >= 0) {
+            assertTrue(String.valueOf(measurement.allocatedBytes()), measurement.allocatedBytes() >= size);
+        }
+    }
+}
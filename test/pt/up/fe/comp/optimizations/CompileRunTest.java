@@ -0,0 +1,93 @@
+package pt.up.fe.comp.optimizations;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp2024.backend.ClassFileBackendImpl;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compiles programs with each option that changes the generated code, runs them and compares their output with the
+ * output of the program.
+ */
+public class CompileRunTest {
+
+    private static final Map<String, String> PROGRAMS = new LinkedHashMap<>();
+
+    static {
+        PROGRAMS.put("optimizations/passes/DeadStore.jmm", "5");
+        PROGRAMS.put("optimizations/passes/InvariantLoop.jmm", "24");
+        PROGRAMS.put("optimizations/passes/CommonExpression.jmm", "24");
+        PROGRAMS.put("optimizations/passes/FoldedBranch.jmm", "7");
+        PROGRAMS.put("optimizations/peephole/IncrementLoop.jmm", "10");
+        PROGRAMS.put("optimizations/peephole/SelfUpdate.jmm", "15\n13\n213\n214");
+        PROGRAMS.put("pipeline/WhileLoop.jmm", "120");
+        PROGRAMS.put("cpf/4_jasmin/control_flow/SimpleWhileStat.jmm", "Result: 0\nResult: 1\nResult: 2");
+        PROGRAMS.put("cpf/4_jasmin/control_flow/IfWhileNested.jmm", "Result: 1\nResult: 2\nResult: 1");
+        PROGRAMS.put("cpf/4_jasmin/control_flow/SimpleIfElseNot.jmm", "10\n200");
+        PROGRAMS.put("cpf/4_jasmin/calls/ConditionArgsFuncCall.jmm", "Result: 10");
+    }
+
+    private static String getCode(String program) {
+        return SpecsIo.getResource("pt/up/fe/comp/" + program);
+    }
+
+    private static void assertRunsWith(String... config) {
+        PROGRAMS.forEach((program, output) -> {
+            var jasminResult = TestUtils.backend(getCode(program), TestUtils.toConfig(config));
+            CpUtils.runJasmin(jasminResult, output);
+        });
+    }
+
+    private static void assertClassFileRunsWith(String... config) {
+        PROGRAMS.forEach((program, output) -> {
+            var ollirResult = TestUtils.optimize(getCode(program), TestUtils.toConfig(config));
+            JasminResult classFile = new ClassFileBackendImpl().toJasmin(ollirResult);
+            TestUtils.noErrors(classFile);
+            CpUtils.runJasmin(classFile, output);
+        });
+    }
+
+    @Test
+    public void withoutOptions() {
+        assertRunsWith();
+    }
+
+    @Test
+    public void optimize() {
+        assertRunsWith("optimize", "true");
+    }
+
+    @Test
+    public void optimizeWithoutLoopRotation() {
+        assertRunsWith("optimize", "true", "loopRotation", "false");
+    }
+
+    @Test
+    public void loopRotation() {
+        assertRunsWith("loopRotation", "true");
+    }
+
+    @Test
+    public void registerAllocation() {
+        assertRunsWith("registerAllocation", "0");
+    }
+
+    @Test
+    public void optimizeAndRegisterAllocation() {
+        assertRunsWith("optimize", "true", "registerAllocation", "0");
+    }
+
+    /**
+     * The class file backend of '-d' runs the same as the Jasmin code
+     */
+    @Test
+    public void classFile() {
+        assertClassFileRunsWith();
+        assertClassFileRunsWith("optimize", "true", "registerAllocation", "0");
+    }
+}
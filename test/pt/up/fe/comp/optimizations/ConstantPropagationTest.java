@@ -0,0 +1,41 @@
+package pt.up.fe.comp.optimizations;
+
+import org.junit.Test;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import static org.junit.Assert.*;
+
+public class ConstantPropagationTest {
+
+    static OllirResult getOllirResult(String filename, String... config) {
+        return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/optimizations/passes/" + filename),
+                TestUtils.toConfig(config));
+    }
+
+    /**
+     * The constants of the condition are propagated and folded, so the branch that is never taken is removed
+     */
+    @Test
+    public void foldsBranch() {
+        var ollirResult = getOllirResult("FoldedBranch.jmm", "optimize", "true");
+        var method = CpUtils.getMethod(ollirResult, "compute");
+
+        assertTrue(CpUtils.getInstructions(CondBranchInstruction.class, method).isEmpty());
+        CpUtils.assertNumberOfOperations(OperationType.MUL, 0, method, ollirResult);
+        CpUtils.assertFindLiteral("6", method, ollirResult);
+    }
+
+    @Test
+    public void keepsBranchWithoutOptimizations() {
+        var ollirResult = getOllirResult("FoldedBranch.jmm");
+        var method = CpUtils.getMethod(ollirResult, "compute");
+
+        CpUtils.assertInstExists(CondBranchInstruction.class, method, ollirResult);
+        CpUtils.assertHasOperation(OperationType.MUL, method, ollirResult);
+    }
+}
@@ -0,0 +1,45 @@
+package pt.up.fe.comp.optimizations;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.Method;
+import org.specs.comp.ollir.OperationType;
+import org.specs.comp.ollir.SingleOpInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.optimization.CopyCoalescing;
+import pt.up.fe.specs.util.SpecsIo;
+
+import static org.junit.Assert.*;
+
+public class CopyCoalescingTest {
+
+    static OllirResult getOllirResult(String filename) {
+        return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/optimizations/passes/" + filename),
+                TestUtils.toConfig());
+    }
+
+    /**
+     * Copies of a single variable, e.g. 'x := tmp0', as opposed to copies of a literal
+     */
+    private static long countCopies(Method method) {
+        return CpUtils.getInstructions(AssignInstruction.class, method).stream()
+                .map(AssignInstruction::getRhs)
+                .filter(rhs -> rhs instanceof SingleOpInstruction single
+                        && !single.getSingleOperand().isLiteral())
+                .count();
+    }
+
+    @Test
+    public void removesTemporaryCopies() {
+        var ollirResult = getOllirResult("DeadStore.jmm");
+        var method = CpUtils.getMethod(ollirResult, "compute");
+        assertEquals(2, countCopies(method));
+
+        assertTrue(new CopyCoalescing(method).coalesce());
+
+        assertEquals(0, countCopies(method));
+        CpUtils.assertNumberOfOperations(OperationType.ADD, 1, method, ollirResult);
+    }
+}
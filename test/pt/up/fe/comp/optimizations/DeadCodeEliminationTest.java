@@ -0,0 +1,32 @@
+package pt.up.fe.comp.optimizations;
+
+import org.junit.Test;
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.optimization.DeadCodeElimination;
+import pt.up.fe.specs.util.SpecsIo;
+
+import static org.junit.Assert.*;
+
+public class DeadCodeEliminationTest {
+
+    static OllirResult getOllirResult(String filename) {
+        return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/optimizations/passes/" + filename),
+                TestUtils.toConfig());
+    }
+
+    @Test
+    public void removesUnreadStore() {
+        var ollirResult = getOllirResult("DeadStore.jmm");
+        var method = CpUtils.getMethod(ollirResult, "compute");
+        CpUtils.assertHasOperation(OperationType.MUL, method, ollirResult);
+
+        assertTrue(new DeadCodeElimination(method).eliminate());
+
+        CpUtils.assertNumberOfOperations(OperationType.MUL, 0, method, ollirResult);
+        CpUtils.assertNumberOfOperations(OperationType.ADD, 1, method, ollirResult);
+        assertFalse(new DeadCodeElimination(method).eliminate());
+    }
+}
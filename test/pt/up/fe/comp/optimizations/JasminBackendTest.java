@@ -0,0 +1,87 @@
+package pt.up.fe.comp.optimizations;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class JasminBackendTest {
+
+    static JasminResult getJasminResult(String filename) {
+        return TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/optimizations/jasmin/" + filename));
+    }
+
+    /**
+     * Code of a method, from its header to its end
+     */
+    private static String getMethodCode(JasminResult jasminResult, String methodName) {
+        var code = jasminResult.getJasminCode();
+        int start = code.indexOf(".method " + methodName + "(");
+        CpUtils.assertTrue("Could not find method '" + methodName + "'", start >= 0, jasminResult);
+
+        return code.substring(start, code.indexOf(".end method", start));
+    }
+
+    /**
+     * The stack limit is the deepest the stack gets, e.g. the receiver and the four arguments of a call
+     */
+    @Test
+    public void exactStackLimit() {
+        var jasminResult = getJasminResult("Conditions.jmm");
+
+        CpUtils.matches(jasminResult, "main\\(\\[Ljava/lang/String;\\)V\\s+\\.limit\\s+stack\\s+5\\s");
+        CpUtils.matches(jasminResult, "max\\(II\\)I\\s+\\.limit\\s+stack\\s+2\\s");
+        CpUtils.matches(jasminResult, "sum\\(IIII\\)I\\s+\\.limit\\s+stack\\s+2\\s");
+    }
+
+    /**
+     * A comparison in a condition branches on the compare itself, instead of computing a boolean and testing it
+     */
+    @Test
+    public void compareAndBranch() {
+        var jasminResult = getJasminResult("Conditions.jmm");
+        var max = getMethodCode(jasminResult, "max");
+
+        CpUtils.matches(max, "iload_1\\s+iload_2\\s+if_icmp(lt|ge)\\s+\\w+");
+        assertFalse(max, max.contains("isub"));
+        assertFalse(max, max.matches("(?s).*\\sif(eq|ne)\\s.*"));
+    }
+
+    /**
+     * '&&' and '!' in a condition become jumps, and the right operand is skipped when the left one is false
+     */
+    @Test
+    public void shortCircuitCondition() {
+        var jasminResult = getJasminResult("Conditions.jmm");
+        var inRange = getMethodCode(jasminResult, "inRange");
+
+        assertFalse(inRange, inRange.contains("iand"));
+        assertFalse(inRange, inRange.contains("ixor"));
+        assertEquals(inRange, 2, inRange.split("if_icmp").length - 1);
+        CpUtils.runJasmin(jasminResult, "8\n1\n0\n0\n15");
+    }
+
+    /**
+     * Negative literals are pushed with the instruction for their range, e.g. 'iconst_m1' or 'bipush -128'
+     */
+    @Test
+    public void negativeLiterals() {
+        var ollirResult = new OllirResult(
+                SpecsIo.getResource("pt/up/fe/comp/optimizations/jasmin/Literals.ollir"), Collections.emptyMap());
+        var jasminResult = TestUtils.backend(ollirResult);
+
+        CpUtils.matches(jasminResult, "iconst_m1");
+        CpUtils.matches(jasminResult, "bipush\\s+-2\\s");
+        CpUtils.matches(jasminResult, "bipush\\s+-128\\s");
+        CpUtils.matches(jasminResult, "sipush\\s+-129\\s");
+        CpUtils.matches(jasminResult, "ldc\\s+-32769\\s");
+        CpUtils.matches(jasminResult, "ldc\\s+32768\\s");
+        CpUtils.runJasmin(jasminResult, "-1\n-2\n-128\n-129\n-32769\n32768");
+    }
+}
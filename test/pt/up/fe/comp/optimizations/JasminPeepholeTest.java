@@ -0,0 +1,75 @@
+package pt.up.fe.comp.optimizations;
+
+import org.junit.Test;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.jasmin.JasminResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+
+public class JasminPeepholeTest {
+
+    static JasminResult getJasminResult(String filename, boolean optimize) {
+        Map<String, String> config = new HashMap<>();
+        config.put("optimize", String.valueOf(optimize));
+        return TestUtils.backend(SpecsIo.getResource("pt/up/fe/comp/" + filename), config);
+    }
+
+    /**
+     * Without '-o' the sum goes through a temporary, which must not keep 'iinc' from being selected
+     */
+    @Test
+    public void iincWithoutOptimizations() {
+        var jasminResult = getJasminResult("cpf/5_optimizations/inst_selection/InstSelection_iinc.jmm", false);
+        CpUtils.matches(jasminResult, "iinc\\s+1\\s+1");
+    }
+
+    @Test
+    public void iincInLoop() {
+        var jasminResult = getJasminResult("optimizations/peephole/IncrementLoop.jmm", false);
+        CpUtils.matches(jasminResult, "iinc\\s+1\\s+1");
+        CpUtils.runJasmin(jasminResult, "10");
+    }
+
+    @Test
+    public void iincInLoopOptimized() {
+        var jasminResult = getJasminResult("optimizations/peephole/IncrementLoop.jmm", true);
+        CpUtils.matches(jasminResult, "iinc\\s+1\\s+1");
+        CpUtils.runJasmin(jasminResult, "10");
+    }
+
+    /**
+     * The value stored in a variable that is read right away is duplicated instead of loaded again
+     */
+    @Test
+    public void storeLoadBecomesDup() {
+        var jasminResult = getJasminResult("optimizations/peephole/IncrementLoop.jmm", false);
+        CpUtils.matches(jasminResult, "dup\\s+istore_3");
+    }
+
+    @Test
+    public void decrementUsesIinc() {
+        var jasminResult = getJasminResult("optimizations/peephole/SelfUpdate.jmm", false);
+        CpUtils.matches(jasminResult, "iinc\\s+\\d+\\s+-2");
+    }
+
+    /**
+     * Only additions and subtractions of a constant that fits in a byte become 'iinc', under '-o' as well, where
+     * 'y = y * 3' is computed straight into y
+     */
+    @Test
+    public void iincOnlyForSmallIncrements() {
+        for (boolean optimize : new boolean[]{false, true}) {
+            var jasminResult = getJasminResult("optimizations/peephole/SelfUpdate.jmm", optimize);
+            var code = jasminResult.getJasminCode();
+
+            assertFalse(code, code.matches("(?s).*iinc\\s+\\d+\\s+3\\s.*"));
+            assertFalse(code, code.matches("(?s).*iinc\\s+\\d+\\s+200\\s.*"));
+            CpUtils.runJasmin(jasminResult, "15\n13\n213\n214");
+        }
+    }
+}
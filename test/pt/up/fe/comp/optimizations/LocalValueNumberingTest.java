@@ -0,0 +1,30 @@
+package pt.up.fe.comp.optimizations;
+
+import org.junit.Test;
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.optimization.LocalValueNumbering;
+import pt.up.fe.specs.util.SpecsIo;
+
+import static org.junit.Assert.*;
+
+public class LocalValueNumberingTest {
+
+    static OllirResult getOllirResult(String filename) {
+        return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/optimizations/passes/" + filename),
+                TestUtils.toConfig());
+    }
+
+    @Test
+    public void reusesProduct() {
+        var ollirResult = getOllirResult("CommonExpression.jmm");
+        var method = CpUtils.getMethod(ollirResult, "compute");
+        CpUtils.assertNumberOfOperations(OperationType.MUL, 2, method, ollirResult);
+
+        assertTrue(new LocalValueNumbering(method).number());
+
+        CpUtils.assertNumberOfOperations(OperationType.MUL, 1, method, ollirResult);
+    }
+}
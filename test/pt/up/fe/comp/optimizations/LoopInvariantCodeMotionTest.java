@@ -0,0 +1,42 @@
+package pt.up.fe.comp.optimizations;
+
+import org.junit.Test;
+import org.specs.comp.ollir.AssignInstruction;
+import org.specs.comp.ollir.OperationType;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp2024.optimization.LoopInvariantCodeMotion;
+import pt.up.fe.specs.util.SpecsIo;
+
+import static org.junit.Assert.*;
+
+public class LoopInvariantCodeMotionTest {
+
+    static OllirResult getOllirResult(String filename) {
+        return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/optimizations/passes/" + filename),
+                TestUtils.toConfig());
+    }
+
+    /**
+     * A product of values the loop does not change is moved before the header of the loop
+     */
+    @Test
+    public void hoistsProduct() {
+        var ollirResult = getOllirResult("InvariantLoop.jmm");
+        var method = CpUtils.getMethod(ollirResult, "compute");
+
+        assertTrue(new LoopInvariantCodeMotion(method).hoist());
+
+        var product = CpUtils.getOperationInstances(OperationType.MUL, method, ollirResult);
+        assertEquals(1, product.size());
+        var hoisted = CpUtils.getInstructions(AssignInstruction.class, method).stream()
+                .filter(assign -> assign.getRhs() == product.get(0))
+                .findFirst()
+                .orElseThrow();
+        var header = method.getLabels().get("whileCond0");
+
+        var instructions = method.getInstructions();
+        assertTrue(instructions.indexOf(hoisted) < instructions.indexOf(header));
+    }
+}
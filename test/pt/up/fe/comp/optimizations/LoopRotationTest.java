@@ -0,0 +1,43 @@
+package pt.up.fe.comp.optimizations;
+
+import org.junit.Test;
+import org.specs.comp.ollir.CondBranchInstruction;
+import org.specs.comp.ollir.GotoInstruction;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.specs.util.SpecsIo;
+
+import static org.junit.Assert.*;
+
+public class LoopRotationTest {
+
+    static OllirResult getOllirResult(String filename, String... config) {
+        return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/optimizations/passes/" + filename),
+                TestUtils.toConfig(config));
+    }
+
+    /**
+     * A guard skips the loop, and the condition is tested again at the bottom of the body instead of jumping back
+     */
+    @Test
+    public void conditionAtBottom() {
+        var ollirResult = getOllirResult("InvariantLoop.jmm", "loopRotation", "true");
+        var method = CpUtils.getMethod(ollirResult, "compute");
+
+        assertTrue(CpUtils.getInstructions(GotoInstruction.class, method).isEmpty());
+        var branches = CpUtils.getInstructions(CondBranchInstruction.class, method);
+        assertEquals(2, branches.size());
+        assertEquals("whileEnd0", branches.get(0).getLabel());
+        assertEquals("whileLoop0", branches.get(1).getLabel());
+    }
+
+    @Test
+    public void disabledJumpsBackToCondition() {
+        var ollirResult = getOllirResult("InvariantLoop.jmm", "optimize", "true", "loopRotation", "false");
+        var method = CpUtils.getMethod(ollirResult, "compute");
+
+        assertEquals(1, CpUtils.getInstructions(GotoInstruction.class, method).size());
+        assertEquals(1, CpUtils.getInstructions(CondBranchInstruction.class, method).size());
+    }
+}
@@ -0,0 +1,85 @@
+package pt.up.fe.comp.optimizations;
+
+import org.junit.Test;
+import org.specs.comp.ollir.GotoInstruction;
+import org.specs.comp.ollir.Instruction;
+import org.specs.comp.ollir.Method;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.ollir.OllirResult;
+import pt.up.fe.comp.jmm.report.ReportType;
+import pt.up.fe.comp2024.optimization.Liveness;
+import pt.up.fe.comp2024.optimization.RegisterAllocator;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Liveness and register allocation over the OLLIR code generated without '-o'.
+ */
+public class RegisterAllocationTest {
+
+    static OllirResult getOllirResult(String filename, String... config) {
+        return TestUtils.optimize(SpecsIo.getResource("pt/up/fe/comp/optimizations/passes/" + filename),
+                TestUtils.toConfig(config));
+    }
+
+    private static int indexOf(Method method, Instruction instruction) {
+        return method.getInstructions().indexOf(instruction);
+    }
+
+    @Test
+    public void livenessOfStraightLineCode() {
+        var ollirResult = getOllirResult("DeadStore.jmm");
+        var liveness = Liveness.analyze(CpUtils.getMethod(ollirResult, "compute"));
+
+        // tmp0 := a * 7; unused := tmp0; tmp1 := a + 1; b := tmp1; ret b
+        assertEquals(5, liveness.getNumInstructions());
+        assertEquals(Set.of("a"), liveness.getLiveIn(0));
+        assertEquals(Set.of("unused"), liveness.getDefs(1));
+        assertEquals(Set.of("tmp0"), liveness.getUses(1));
+        assertFalse(liveness.getLiveOut(1).contains("unused"));
+        assertEquals(Set.of("b"), liveness.getLiveIn(4));
+        assertTrue(liveness.getLiveOut(4).isEmpty());
+    }
+
+    @Test
+    public void livenessAroundLoop() {
+        var ollirResult = getOllirResult("InvariantLoop.jmm");
+        var method = CpUtils.getMethod(ollirResult, "compute");
+        var liveness = Liveness.analyze(method);
+
+        var backEdge = CpUtils.getInstructions(GotoInstruction.class, method).get(0);
+        int index = indexOf(method, backEdge);
+        int header = indexOf(method, method.getLabels().get("whileCond0"));
+
+        assertEquals(List.of(header), liveness.getSuccessors(index));
+        assertEquals(Set.of("i", "s", "n", "x", "y"), liveness.getLiveOut(index));
+        assertFalse(liveness.getLiveOut(index).contains("k"));
+    }
+
+    @Test
+    public void sharesRegisters() {
+        var ollirResult = getOllirResult("DeadStore.jmm");
+        var method = CpUtils.getMethod(ollirResult, "compute");
+
+        // 'this', 'a' and a single register for the locals, which are never live together, or 'a' once it is dead
+        assertEquals(3, new RegisterAllocator(method).allocate(0));
+
+        var varTable = method.getVarTable();
+        assertEquals(1, varTable.get("a").getVirtualReg());
+        varTable.forEach((name, descriptor) -> assertTrue(name, descriptor.getVirtualReg() == 1
+                || descriptor.getVirtualReg() == 2));
+    }
+
+    @Test
+    public void reportsTooFewRegisters() {
+        var ollirResult = getOllirResult("InvariantLoop.jmm", "registerAllocation", "2");
+
+        assertEquals(1, TestUtils.getNumReports(ollirResult.getReports(), ReportType.ERROR));
+        assertTrue(ollirResult.getReports().get(0).getMessage().contains("'compute'"));
+    }
+}
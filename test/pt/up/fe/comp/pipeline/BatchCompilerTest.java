@@ -0,0 +1,82 @@
+package pt.up.fe.comp.pipeline;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp.CpUtils;
+import pt.up.fe.comp2024.BatchCompiler;
+import pt.up.fe.comp2024.CompilerConfig;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+
+public class BatchCompilerTest {
+
+    private static final List<String> PROGRAMS = List.of(
+            "pipeline/WhileLoop.jmm",
+            "optimizations/peephole/IncrementLoop.jmm",
+            "cpf/4_jasmin/arithmetic/Arithmetic_less.jmm");
+
+    private static final List<String> OUTPUTS = List.of("120", "10", "1");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private List<File> copyPrograms() throws Exception {
+        List<File> files = new ArrayList<>();
+        for (var program : PROGRAMS) {
+            files.add(CompilationCacheTest.copyResource(folder, program));
+        }
+
+        return files;
+    }
+
+    private static Map<String, String> getConfig(List<File> files, String... args) {
+        List<String> allArgs = new ArrayList<>(List.of(args));
+        allArgs.add("-b=" + files.stream().map(File::getAbsolutePath).collect(Collectors.joining(",")));
+        return CompilerConfig.parseArgs(allArgs.toArray(new String[0]));
+    }
+
+    private static void assertSuccess(List<BatchCompiler.FileResult> results) {
+        for (var result : results) {
+            assertTrue("Could not compile " + result.file() + ": " + result.reports(), result.isSuccess());
+        }
+    }
+
+    @Test
+    public void resultsInInputOrder() throws Exception {
+        var files = copyPrograms();
+        var results = new BatchCompiler(getConfig(files), 2).compile(files);
+
+        assertSuccess(results);
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals(files.get(i), results.get(i).file());
+            CpUtils.runJasmin(results.get(i).jasminResult(), OUTPUTS.get(i));
+        }
+    }
+
+    /**
+     * The second batch is served entirely from the cache written by the first one
+     */
+    @Test
+    public void compileTwiceWithCache() throws Exception {
+        var files = copyPrograms();
+        var cacheDir = folder.newFolder("cache");
+        var config = getConfig(files, "-o", "-c=" + cacheDir.getAbsolutePath());
+
+        var first = new BatchCompiler(config, 2).compile(files);
+        var second = new BatchCompiler(config, 2).compile(files);
+
+        assertSuccess(first);
+        assertSuccess(second);
+        for (int i = 0; i < files.size(); i++) {
+            assertEquals(first.get(i).jasminResult().getJasminCode(), second.get(i).jasminResult().getJasminCode());
+            CpUtils.runJasmin(second.get(i).jasminResult(), OUTPUTS.get(i));
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package pt.up.fe.comp.pipeline;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompilationCache;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.Launcher;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class CompilationCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File cacheDir;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = folder.newFolder("cache");
+    }
+
+    static File copyResource(TemporaryFolder folder, String resource) throws Exception {
+        var file = new File(folder.getRoot(), new File(resource).getName());
+        SpecsIo.write(file, SpecsIo.getResource("pt/up/fe/comp/" + resource));
+        return file;
+    }
+
+    /**
+     * Runs the launcher on the file and returns what it prints, with the cache of the test unless 'noCache'.
+     */
+    private String compile(File input, boolean noCache, String... args) {
+        List<String> allArgs = new ArrayList<>(Arrays.asList(args));
+        allArgs.add("-i=" + input.getAbsolutePath());
+        if (!noCache) {
+            allArgs.add("-c=" + cacheDir.getAbsolutePath());
+        }
+
+        var out = new ByteArrayOutputStream();
+        Launcher.run(CompilerConfig.parseArgs(allArgs.toArray(new String[0])), new PrintStream(out, true));
+        return out.toString();
+    }
+
+    private String compile(File input, String... args) {
+        return compile(input, false, args);
+    }
+
+    @Test
+    public void keyDependsOnLoopRotation() throws Exception {
+        var input = copyResource(folder, "pipeline/WhileLoop.jmm");
+        var code = SpecsIo.read(input);
+
+        var rotated = CompilationCache.getKey(code, CompilerConfig.parseArgs(new String[]{"-i=" + input, "-o"}));
+        var notRotated = CompilationCache.getKey(code,
+                CompilerConfig.parseArgs(new String[]{"-i=" + input, "-o", "-w=false"}));
+
+        assertNotEquals(rotated, notRotated);
+    }
+
+    /**
+     * The version of the keys is a hash of the classes of the compiler, not the random version used when they cannot
+     * be read, so entries are reused by other runs of the same build
+     */
+    @Test
+    public void keyDependsOnBuild() {
+        var version = CompilationCache.getBuildVersion();
+
+        assertTrue(version, version.matches("[0-9a-f]{64}"));
+        assertEquals(version, CompilationCache.getBuildVersion());
+    }
+
+    @Test
+    public void hitMatchesMiss() throws Exception {
+        var input = copyResource(folder, "pipeline/WhileLoop.jmm");
+
+        var miss = compile(input, "-o");
+        var hit = compile(input, "-o");
+
+        assertEquals(miss, hit);
+        assertEquals(compile(input, true, "-o"), hit);
+    }
+
+    /**
+     * A compilation without loop rotation must not be served the rotated loop of a previous compilation
+     */
+    @Test
+    public void loopRotationIsNotShared() throws Exception {
+        var input = copyResource(folder, "pipeline/WhileLoop.jmm");
+
+        var rotated = compile(input, "-o", "-a=none", "-l=none");
+        var notRotated = compile(input, "-o", "-w=false", "-a=none", "-l=none");
+
+        assertFalse(rotated.contains("goto"));
+        assertTrue(notRotated.contains("goto"));
+        assertEquals(compile(input, true, "-o", "-w=false", "-a=none", "-l=none"), notRotated);
+    }
+
+    /**
+     * A class file written from the cache has its registers assigned as in the compilation that was cached
+     */
+    @Test
+    public void classFileHitMatchesMiss() throws Exception {
+        var input = copyResource(folder, "pipeline/WhileLoop.jmm");
+        var missDir = folder.newFolder("miss");
+        var hitDir = folder.newFolder("hit");
+        var noCacheDir = folder.newFolder("noCache");
+
+        compile(input, "-o", "-r=0", "-d=" + missDir.getAbsolutePath());
+        compile(input, "-o", "-r=0", "-d=" + hitDir.getAbsolutePath());
+        compile(input, true, "-o", "-r=0", "-d=" + noCacheDir.getAbsolutePath());
+
+        var miss = Files.readAllBytes(new File(missDir, "WhileLoop.class").toPath());
+        assertArrayEquals(miss, Files.readAllBytes(new File(hitDir, "WhileLoop.class").toPath()));
+        assertArrayEquals(miss, Files.readAllBytes(new File(noCacheDir, "WhileLoop.class").toPath()));
+    }
+}
@@ -0,0 +1,212 @@
+package pt.up.fe.comp.pipeline;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import pt.up.fe.comp2024.CompileServer;
+import pt.up.fe.comp2024.CompilerConfig;
+import pt.up.fe.comp2024.Launcher;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CompileServerTest {
+
+    private static final long STARTUP_TIMEOUT_MS = 60_000;
+
+    private static int port;
+    private static File tokenFile;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Output of a compile request, without the line with the exit code
+     */
+    private record Response(String output, int exitCode) {
+    }
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        port = getFreePort();
+        tokenFile = Files.createTempDirectory("jmm-server").resolve("server.token").toFile();
+        startServer(port, tokenFile);
+    }
+
+    private static int getFreePort() throws IOException {
+        try (var socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Thread startServer(int port, File tokenFile) throws Exception {
+        var server = new Thread(() -> new CompileServer(port, tokenFile).run(), "compile-server-" + port);
+        server.setDaemon(true);
+        server.start();
+
+        // The server warms up before it listens
+        long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MS;
+        while (true) {
+            try (var socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+                // An empty request is answered with an error, which is enough to know the server is up
+                socket.shutdownOutput();
+                socket.getInputStream().readAllBytes();
+                return server;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) {
+                    throw new IllegalStateException("Compile server did not start on port " + port, e);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static Response request(File workingDir, String... args) throws IOException {
+        return request(port, Files.readString(tokenFile.toPath()), workingDir, args);
+    }
+
+    private static Response request(int port, String token, File workingDir, String... args) throws IOException {
+        try (var socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            var out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+            out.println(token);
+            out.println(workingDir.getAbsolutePath());
+            out.println(String.join("\t", args));
+
+            var in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            var output = new StringBuilder();
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith(CompileServer.EXIT_MARKER)) {
+                    return new Response(output.toString(),
+                            Integer.parseInt(line.substring(CompileServer.EXIT_MARKER.length())));
+                }
+                output.append(line).append(System.lineSeparator());
+            }
+
+            throw new IllegalStateException("Compile server closed the connection without an exit code: " + output);
+        }
+    }
+
+    private static String compileLocally(String... args) {
+        var out = new ByteArrayOutputStream();
+        Launcher.run(CompilerConfig.parseArgs(args), new PrintStream(out, true, StandardCharsets.UTF_8));
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void sameOutputAsLauncher() throws Exception {
+        var input = CompilationCacheTest.copyResource(folder, "pipeline/WhileLoop.jmm");
+
+        var response = request(folder.getRoot(), "-i=" + input.getName(), "-o", "-a=none");
+
+        assertEquals(0, response.exitCode());
+        assertTrue(response.output().contains(".class public WhileLoop"));
+        assertEquals(compileLocally("-i=" + input.getAbsolutePath(), "-o", "-a=none"), response.output());
+    }
+
+    /**
+     * Paths in the request are relative to the working directory of the client, not of the server
+     */
+    @Test
+    public void resolvesPathsAgainstWorkingDirectory() throws Exception {
+        CompilationCacheTest.copyResource(folder, "pipeline/WhileLoop.jmm");
+
+        var response = request(folder.getRoot(), "-i=WhileLoop.jmm", "-d=classes", "-a=none", "-l=none");
+
+        assertEquals(response.output(), 0, response.exitCode());
+        assertTrue(new File(folder.getRoot(), "classes/WhileLoop.class").isFile());
+    }
+
+    @Test
+    public void failedRequestKeepsServing() throws Exception {
+        var input = CompilationCacheTest.copyResource(folder, "pipeline/WhileLoop.jmm");
+
+        assertEquals(1, request(folder.getRoot(), "-s=" + port).exitCode());
+        assertEquals(1, request(folder.getRoot(), "-i=Missing.jmm").exitCode());
+        assertEquals(0, request(folder.getRoot(), "-i=" + input.getName()).exitCode());
+    }
+
+    @Test
+    public void concurrentRequests() throws Exception {
+        var input = CompilationCacheTest.copyResource(folder, "pipeline/WhileLoop.jmm");
+        var expected = compileLocally("-i=" + input.getAbsolutePath(), "-o", "-r=0");
+
+        var executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Response>> requests = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                requests.add(() -> request(folder.getRoot(), "-i=" + input.getName(), "-o", "-r=0"));
+            }
+
+            for (Future<Response> response : executor.invokeAll(requests)) {
+                assertEquals(0, response.get().exitCode());
+                assertEquals(expected, response.get().output());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Requests without the token of the server are refused, since they could read and write any file of its user
+     */
+    @Test
+    public void rejectsRequestWithoutToken() throws Exception {
+        var input = CompilationCacheTest.copyResource(folder, "pipeline/WhileLoop.jmm");
+
+        var response = request(port, "not-the-token", folder.getRoot(), "-i=" + input.getName(), "-d=classes");
+
+        assertEquals(1, response.exitCode());
+        assertTrue(response.output(), response.output().contains(tokenFile.getPath()));
+        assertFalse(new File(folder.getRoot(), "classes").exists());
+    }
+
+    /**
+     * Errors are answered with the stage that failed and the class of the exception, not only its message
+     */
+    @Test
+    public void reportsStageOfFailure() throws Exception {
+        // The type of String fields is not supported when building the symbol table
+        var input = folder.newFile("StringField.jmm");
+        Files.writeString(input.toPath(), """
+                class StringField {
+                    String s;
+                    public static void main(String[] args) {
+                    }
+                }
+                """);
+
+        var response = request(folder.getRoot(), "-i=" + input.getName(), "-a=none");
+
+        assertEquals(1, response.exitCode());
+        assertTrue(response.output(), response.output().startsWith("Compile request failed during semantic analysis"));
+        assertTrue(response.output(), response.output().contains("UnsupportedOperationException"));
+    }
+
+    @Test
+    public void stopRequestStopsServer() throws Exception {
+        int stopPort = getFreePort();
+        var stopTokenFile = new File(folder.getRoot(), "stop.token");
+        var server = startServer(stopPort, stopTokenFile);
+
+        var response = request(stopPort, Files.readString(stopTokenFile.toPath()), folder.getRoot(),
+                CompileServer.STOP_REQUEST);
+
+        assertEquals(0, response.exitCode());
+        server.join(STARTUP_TIMEOUT_MS);
+        assertFalse(server.isAlive());
+        assertFalse(stopTokenFile.exists());
+    }
+}
@@ -0,0 +1,161 @@
+package pt.up.fe.comp.symboltable;
+
+import org.junit.Before;
+import org.junit.Test;
+import pt.up.fe.comp.TestUtils;
+import pt.up.fe.comp.jmm.analysis.table.Symbol;
+import pt.up.fe.comp.jmm.analysis.table.SymbolTable;
+import pt.up.fe.comp.jmm.analysis.table.Type;
+import pt.up.fe.comp.jmm.ast.JmmNodeImpl;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTable;
+import pt.up.fe.comp2024.symboltable.JmmSymbolTableBuilder;
+import pt.up.fe.comp2024.symboltable.ScopedSymbol.Scope;
+import pt.up.fe.specs.util.SpecsIo;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class JmmSymbolTableTest {
+
+    private JmmSymbolTable table;
+
+    @Before
+    public void setUp() {
+        var code = SpecsIo.getResource("pt/up/fe/comp/symboltable/Shadowing.jmm");
+        table = JmmSymbolTableBuilder.build(TestUtils.parse(code).getRootNode());
+    }
+
+    private void assertResolves(String method, String name, Scope scope, Type type) {
+        var resolved = table.resolve(method, name);
+
+        assertTrue(method + ": " + name, resolved.isPresent());
+        assertEquals(scope, resolved.get().scope());
+        assertEquals(new Symbol(type, name), resolved.get().symbol());
+    }
+
+    /**
+     * A table of another implementation, which is resolved without the indexes of {@link JmmSymbolTable}
+     */
+    private static SymbolTable delegateTo(SymbolTable table) {
+        return new SymbolTable() {
+            @Override
+            public List<String> getImports() {
+                return table.getImports();
+            }
+
+            @Override
+            public String getClassName() {
+                return table.getClassName();
+            }
+
+            @Override
+            public String getSuper() {
+                return table.getSuper();
+            }
+
+            @Override
+            public List<Symbol> getFields() {
+                return table.getFields();
+            }
+
+            @Override
+            public List<String> getMethods() {
+                return table.getMethods();
+            }
+
+            @Override
+            public Type getReturnType(String methodSignature) {
+                return table.getReturnType(methodSignature);
+            }
+
+            @Override
+            public List<Symbol> getParameters(String methodSignature) {
+                return table.getParameters(methodSignature);
+            }
+
+            @Override
+            public List<Symbol> getLocalVariables(String methodSignature) {
+                return table.getLocalVariables(methodSignature);
+            }
+        };
+    }
+
+    @Test
+    public void mainMethodListedLast() {
+        assertEquals(List.of("shadowedByParam", "shadowedByLocal", "main"), table.getMethods());
+        assertEquals(new Type("void", false), table.getReturnType("main"));
+        assertTrue(table.getParameters("main").isEmpty());
+    }
+
+    @Test
+    public void membersInDeclarationOrder() {
+        var intType = new Type("int", false);
+
+        assertEquals(List.of(new Symbol(intType, "x"), new Symbol(new Type("boolean", false), "flag")),
+                table.getFields());
+        assertEquals(List.of(new Symbol(intType, "x"), new Symbol(intType, "y")),
+                table.getParameters("shadowedByParam"));
+        assertEquals(List.of(new Symbol(intType, "z")), table.getLocalVariables("shadowedByParam"));
+    }
+
+    @Test
+    public void localsShadowParamsShadowFields() {
+        var intType = new Type("int", false);
+        var boolType = new Type("boolean", false);
+
+        assertResolves("shadowedByParam", "x", Scope.PARAM, intType);
+        assertResolves("shadowedByParam", "z", Scope.LOCAL, intType);
+        assertResolves("shadowedByParam", "flag", Scope.FIELD, boolType);
+        assertResolves("shadowedByLocal", "flag", Scope.LOCAL, boolType);
+        assertResolves("shadowedByLocal", "x", Scope.FIELD, intType);
+        assertResolves("main", "x", Scope.LOCAL, intType);
+    }
+
+    @Test
+    public void unknownNames() {
+        assertEquals(Optional.empty(), table.resolve("shadowedByParam", "w"));
+        assertEquals(Optional.empty(), table.resolve("shadowedByLocal", "z"));
+        assertEquals(Optional.empty(), table.resolve("missing", "w"));
+    }
+
+    @Test
+    public void otherTablesResolveTheSame() {
+        var other = delegateTo(table);
+
+        for (var method : List.of("shadowedByParam", "shadowedByLocal", "main", "missing")) {
+            for (var name : List.of("x", "y", "z", "flag", "args", "w")) {
+                assertEquals(method + ": " + name, table.resolve(method, name),
+                        JmmSymbolTable.resolve(other, method, name));
+            }
+        }
+    }
+
+    /**
+     * A return type that cannot be resolved is kept as a null type instead of failing the build of the table
+     */
+    @Test
+    public void unresolvedReturnType() {
+        var literal = new JmmNodeImpl("IntegerLiteral");
+        literal.put("value", "1");
+        var returnType = new JmmNodeImpl("PropertyAccess");
+        returnType.put("name", "foo");
+        returnType.add(literal);
+
+        var method = new JmmNodeImpl("MethodDecl");
+        method.put("name", "foo");
+        method.add(returnType);
+        var classDecl = new JmmNodeImpl("ClassDecl");
+        classDecl.put("name", "A");
+        classDecl.add(method);
+        var root = new JmmNodeImpl("Program");
+        root.add(classDecl);
+
+        var unresolved = JmmSymbolTableBuilder.build(root);
+
+        assertEquals(List.of("foo"), unresolved.getMethods());
+        assertNull(unresolved.getReturnType("foo"));
+        assertTrue(unresolved.getParameters("foo").isEmpty());
+    }
+}